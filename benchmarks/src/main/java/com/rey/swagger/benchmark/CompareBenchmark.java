@@ -0,0 +1,69 @@
+package com.rey.swagger.benchmark;
+
+import com.rey.swagger.ResolvedSwagger;
+import com.rey.swagger.SwaggerComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import v2.io.swagger.models.Swagger;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompareBenchmark {
+
+    @Param({"100", "1000"})
+    public int pathCount;
+
+    @Param({"10", "1000"})
+    public int enumSize;
+
+    @Param({"0", "0.05"})
+    public double mutationRate;
+
+    private Swagger expected;
+    private Swagger actual;
+
+    private ResolvedSwagger resolvedExpected;
+    private ResolvedSwagger resolvedActual;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        expected = new SpecGenerator().pathCount(pathCount).enumSize(enumSize).generate();
+        actual = new SpecGenerator().pathCount(pathCount).enumSize(enumSize).mutationRate(mutationRate).generate();
+        resolvedExpected = new ResolvedSwagger(expected);
+        resolvedActual = new ResolvedSwagger(actual);
+    }
+
+    @Benchmark
+    public String compare() throws Exception {
+        return new SwaggerComparator(expected, actual).compare();
+    }
+
+    @Benchmark
+    public String compareWarmReferences() throws Exception {
+        return new SwaggerComparator(resolvedExpected, resolvedActual).compare();
+    }
+
+    @Benchmark
+    public String compareParallel() throws Exception {
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+        swaggerComparator.setExecutor(ForkJoinPool.commonPool());
+        return swaggerComparator.compare();
+    }
+}
@@ -0,0 +1,69 @@
+package com.rey.swagger.benchmark;
+
+import com.rey.swagger.ResolvedSwagger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves every {@code $ref} property of the generated definitions, once against a fresh
+ * {@link ResolvedSwagger} and once against one that has already seen them all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DereferenceBenchmark {
+
+    @Param({"3", "6"})
+    public int definitionDepth;
+
+    @Param({"3", "10"})
+    public int refFanOut;
+
+    private Swagger swagger;
+    private ResolvedSwagger warm;
+    private final List<Property> references = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        swagger = new SpecGenerator().pathCount(1).definitionDepth(definitionDepth).refFanOut(refFanOut).generate();
+        swagger.getDefinitions().values().forEach(model -> model.getProperties().values().stream()
+                .filter(property -> property instanceof RefProperty)
+                .forEach(references::add));
+        warm = new ResolvedSwagger(swagger);
+        references.forEach(warm::dereferenceProperty);
+    }
+
+    @Benchmark
+    public void cold(Blackhole blackhole) {
+        ResolvedSwagger resolved = new ResolvedSwagger(swagger);
+        for (Property property : references)
+            blackhole.consume(resolved.dereferenceProperty(property));
+    }
+
+    @Benchmark
+    public void warm(Blackhole blackhole) {
+        for (Property property : references)
+            blackhole.consume(warm.dereferenceProperty(property));
+    }
+}
@@ -0,0 +1,54 @@
+package com.rey.swagger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.parser.SwaggerParser;
+import v2.io.swagger.util.Yaml;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"100", "1000"})
+    public int pathCount;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Swagger swagger = new SpecGenerator().pathCount(pathCount).generate();
+        file = File.createTempFile("spec", ".yaml");
+        Files.write(file.toPath(), Yaml.mapper().writeValueAsString(swagger).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Swagger read() {
+        return new SwaggerParser().read(file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,195 @@
+package com.rey.swagger.benchmark;
+
+import v2.io.swagger.models.ModelImpl;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+import v2.io.swagger.models.RefModel;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.BodyParameter;
+import v2.io.swagger.models.parameters.QueryParameter;
+import v2.io.swagger.models.properties.ArrayProperty;
+import v2.io.swagger.models.properties.DateTimeProperty;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.properties.StringProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministically generates large specs. Definitions are laid out in {@code definitionDepth} levels of
+ * {@code refFanOut} models each, every model referencing {@code refFanOut} models of the next level. Every
+ * operation references a model of the first level, so the same definitions are dereferenced over and over.
+ * <p>
+ * With a mutation rate above zero, the generated spec randomly drops paths, properties and enum values and
+ * changes formats, so it can serve as the actual side of a comparison against an unmutated spec.
+ */
+public class SpecGenerator {
+
+    private int pathCount = 100;
+    private int parametersPerOperation = 5;
+    private int definitionDepth = 3;
+    private int refFanOut = 3;
+    private int enumSize = 10;
+    private double mutationRate = 0;
+    private long seed = 42;
+
+    private Random random;
+
+    public SpecGenerator pathCount(int pathCount) {
+        this.pathCount = pathCount;
+        return this;
+    }
+
+    public SpecGenerator parametersPerOperation(int parametersPerOperation) {
+        this.parametersPerOperation = parametersPerOperation;
+        return this;
+    }
+
+    public SpecGenerator definitionDepth(int definitionDepth) {
+        this.definitionDepth = definitionDepth;
+        return this;
+    }
+
+    public SpecGenerator refFanOut(int refFanOut) {
+        this.refFanOut = refFanOut;
+        return this;
+    }
+
+    public SpecGenerator enumSize(int enumSize) {
+        this.enumSize = enumSize;
+        return this;
+    }
+
+    public SpecGenerator mutationRate(double mutationRate) {
+        this.mutationRate = mutationRate;
+        return this;
+    }
+
+    public SpecGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public Swagger generate() {
+        random = new Random(seed);
+
+        Swagger swagger = new Swagger();
+        swagger.setSwagger("2.0");
+        swagger.setHost("bench.test");
+
+        Map<String, v2.io.swagger.models.Model> definitions = new LinkedHashMap<>();
+        for (int level = 0; level < definitionDepth; level++)
+            for (int i = 0; i < refFanOut; i++)
+                definitions.put(modelName(level, i), model(level, i));
+        swagger.setDefinitions(definitions);
+
+        Map<String, Path> paths = new LinkedHashMap<>();
+        for (int i = 0; i < pathCount; i++) {
+            if (mutate())
+                continue;
+            Path path = new Path();
+            path.setGet(getOperation(i));
+            path.setPost(postOperation(i));
+            paths.put("/resources" + (i % 10) + "/items" + i + "/{id}", path);
+        }
+        swagger.setPaths(paths);
+
+        return swagger;
+    }
+
+    private Operation getOperation(int index) {
+        Operation operation = new Operation();
+        operation.setOperationId("get" + index);
+        for (int i = 0; i < parametersPerOperation; i++) {
+            if (mutate())
+                continue;
+            QueryParameter parameter = new QueryParameter();
+            parameter.setName("param" + i);
+            if (i % 3 == 0) {
+                parameter.setType("integer");
+                parameter.setFormat(mutate() ? "int64" : "int32");
+            } else {
+                parameter.setType("string");
+                if (i % 3 == 2)
+                    parameter.setEnum(enumValues("value"));
+            }
+            operation.addParameter(parameter);
+        }
+
+        ArrayProperty items = new ArrayProperty(new RefProperty("#/definitions/" + modelName(0, index % refFanOut)));
+        ObjectProperty schema = new ObjectProperty();
+        schema.setType("object");
+        Map<String, Property> properties = new LinkedHashMap<>();
+        properties.put("data", items);
+        properties.put("total", new IntegerProperty());
+        schema.setProperties(properties);
+        operation.addResponse("200", new Response().description("Success").schema(schema));
+        return operation;
+    }
+
+    private Operation postOperation(int index) {
+        Operation operation = new Operation();
+        operation.setOperationId("post" + index);
+        BodyParameter body = new BodyParameter();
+        body.setName("body");
+        body.setSchema(new RefModel("#/definitions/" + modelName(0, (index + 1) % refFanOut)));
+        operation.addParameter(body);
+        operation.addResponse("200", new Response().description("Success")
+                .schema(new RefProperty("#/definitions/" + modelName(0, index % refFanOut))));
+        return operation;
+    }
+
+    private ModelImpl model(int level, int index) {
+        ModelImpl model = new ModelImpl();
+        model.setType("object");
+
+        StringProperty name = new StringProperty();
+        name.setPattern("^[a-z]+$");
+        model.addProperty("name", name);
+
+        IntegerProperty count = new IntegerProperty();
+        if (mutate())
+            count.setFormat("int64");
+        model.addProperty("count", count);
+
+        model.addProperty("createdAt", new DateTimeProperty());
+
+        StringProperty status = new StringProperty();
+        status.setEnum(enumValues("STATUS"));
+        model.addProperty("status", status);
+
+        if (level + 1 < definitionDepth) {
+            for (int i = 0; i < refFanOut; i++) {
+                if (mutate())
+                    continue;
+                String child = "#/definitions/" + modelName(level + 1, (index + i) % refFanOut);
+                model.addProperty("child" + i, new RefProperty(child));
+                model.addProperty("children" + i, new ArrayProperty(new RefProperty(child)));
+            }
+        }
+        return model;
+    }
+
+    private List<String> enumValues(String prefix) {
+        List<String> values = new ArrayList<>(enumSize);
+        for (int i = 0; i < enumSize; i++)
+            if (!mutate())
+                values.add(prefix + "_" + i);
+        return values;
+    }
+
+    private boolean mutate() {
+        return mutationRate > 0 && random.nextDouble() < mutationRate;
+    }
+
+    private static String modelName(int level, int index) {
+        return "Model" + level + "_" + index;
+    }
+}
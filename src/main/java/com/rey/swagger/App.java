@@ -3,26 +3,90 @@ package com.rey.swagger;
 import v2.io.swagger.models.Swagger;
 import v2.io.swagger.parser.SwaggerParser;
 
+import javax.management.JMException;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class App {
 
     public static void main(String[] args) {
         try {
-            if(args.length != 2)
+            List<String> files = new ArrayList<>();
+            Map<String, String> options = parseOptions(args, files);
+
+            if(options.containsKey("server"))
+                startServer(options);
+            else if(options.containsKey("snapshot"))
+                writeSnapshot(files, options.get("snapshot"));
+            else if(options.containsKey("validate"))
+                validatePayloads(files, options);
+            else if(options.containsKey("matrix"))
+                compareMatrix(files, options);
+            else if(options.containsKey("batch") || options.containsKey("manifest"))
+                compareBatch(files, options);
+            else if(files.size() != 2)
                 System.out.println("Incorrect arguments");
-            else if(!isFile(args[0]))
-                System.out.println("File not found: " + args[0]);
-            else if(!isFile(args[1]))
-                System.out.println("File not found: " + args[1]);
+            else if(SpecSource.isSource(new File(files.get(0))) || SpecSource.isSource(new File(files.get(1))))
+                compareTrees(files, options);
+            else if(!isFile(files.get(0)))
+                System.out.println("File not found: " + files.get(0));
+            else if(!isFile(files.get(1)))
+                System.out.println("File not found: " + files.get(1));
+            else if(options.containsKey("watch"))
+                watch(files, options);
             else {
-                SwaggerParser parser = new SwaggerParser();
-                final Swagger expected = parser.read(args[0]);
-                final Swagger actual = parser.read(args[1]);
+                final Swagger expected = SwaggerSnapshot.load(files.get(0));
+                final Swagger actual = SwaggerSnapshot.load(files.get(1));
                 SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
-                System.out.println(swaggerComparator.compare());
+                if (options.containsKey("parallel"))
+                    swaggerComparator.setExecutor(createPool(options.get("parallel")));
+                if (options.containsKey("metrics"))
+                    swaggerComparator.setMetrics(new ComparisonMetrics());
+                setScope(swaggerComparator, options);
+                if (options.containsKey("summary")) {
+                    String size = options.get("summary");
+                    System.out.println(swaggerComparator.summarize(1, size.isEmpty() ? 20 : Integer.parseInt(size)));
+                    return;
+                }
+                if (options.containsKey("check")) {
+                    String difference = swaggerComparator.findFirstDifference();
+                    System.out.println(difference == null ? "Compatible" : "Incompatible: " + difference);
+                    if (difference != null)
+                        System.exit(1);
+                    return;
+                }
+                FingerprintCache fingerprintCache = null;
+                if (options.containsKey("incremental")) {
+                    fingerprintCache = FingerprintCache.load(new File(options.get("incremental")));
+                    swaggerComparator.setFingerprintCache(fingerprintCache);
+                }
+                if (options.containsKey("output")) {
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.get("output")))) {
+                        swaggerComparator.compare(out);
+                    }
+                } else {
+                    swaggerComparator.compare(System.out);
+                    System.out.println();
+                }
+                if (fingerprintCache != null)
+                    fingerprintCache.save(new File(options.get("incremental")));
             }
         } catch (Exception e) {
             StringWriter sw = new StringWriter();
@@ -31,6 +95,207 @@ public class App {
         }
     }
 
+    private static void startServer(Map<String, String> options) throws IOException, JMException {
+        int port = options.get("server").isEmpty() ? 8080 : Integer.parseInt(options.get("server"));
+        int cacheSize = options.containsKey("cache-size") ? Integer.parseInt(options.get("cache-size")) : 32;
+        int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime.getRuntime().availableProcessors();
+        CompareServer server = new CompareServer(port, cacheSize, Executors.newFixedThreadPool(threads));
+        if (options.containsKey("metrics"))
+            server.setMetrics(new ComparisonMetrics().register("server"));
+        server.start();
+        System.out.println("Listening on localhost:" + server.getPort());
+    }
+
+    /**
+     * Compares the first file against every other file and every file listed in the manifest, one per line.
+     */
+    private static void compareBatch(List<String> files, Map<String, String> options) throws IOException {
+        List<String> candidates = new ArrayList<>(files.subList(Math.min(1, files.size()), files.size()));
+        if (options.containsKey("manifest")) {
+            if (!isFile(options.get("manifest"))) {
+                System.out.println("File not found: " + options.get("manifest"));
+                return;
+            }
+            candidates.addAll(BatchComparator.readManifest(Paths.get(options.get("manifest"))));
+        }
+
+        if (files.isEmpty() || candidates.isEmpty())
+            System.out.println("Incorrect arguments");
+        else if (!isFile(files.get(0)))
+            System.out.println("File not found: " + files.get(0));
+        else {
+            int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                BatchComparator batchComparator = new BatchComparator(SwaggerSnapshot.load(files.get(0)), executor);
+                batchComparator.compare(new ArrayList<>(new LinkedHashSet<>(candidates)), System.out);
+                System.out.println();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Prints a new report every time one of the two files changes, until the process is stopped.
+     */
+    private static void watch(List<String> files, Map<String, String> options) throws IOException, InterruptedException {
+        long debounce = options.containsKey("debounce") ? Long.parseLong(options.get("debounce")) : 200;
+        SpecWatcher watcher = new SpecWatcher(Paths.get(files.get(0)), Paths.get(files.get(1)), debounce, (expected, actual) -> {
+            SwaggerComparator swaggerComparator = new SwaggerComparator(expected.getPlan(), actual);
+            setScope(swaggerComparator, options);
+            return swaggerComparator;
+        }, System.out);
+        watcher.run();
+    }
+
+    private static void setScope(SwaggerComparator swaggerComparator, Map<String, String> options) {
+        if (options.containsKey("paths") || options.containsKey("tags") || options.containsKey("operations"))
+            swaggerComparator.setScope(new ComparisonScope()
+                    .paths(split(options.get("paths")))
+                    .tags(split(options.get("tags")))
+                    .operationIds(split(options.get("operations"))));
+    }
+
+    /**
+     * Compares the specs of two directories or archives, matched by relative path.
+     */
+    private static void compareTrees(List<String> files, Map<String, String> options) throws IOException {
+        for (String file : files)
+            if (!SpecSource.isSource(new File(file))) {
+                System.out.println("Not a directory or archive: " + file);
+                return;
+            }
+
+        int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            SpecTreeComparator comparator = new SpecTreeComparator(executor, threads * 2);
+            if (options.containsKey("output")) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.get("output")))) {
+                    comparator.compare(new File(files.get(0)), new File(files.get(1)), out);
+                }
+            } else {
+                comparator.compare(new File(files.get(0)), new File(files.get(1)), System.out);
+                System.out.println();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Compares every file against every other one, or only the pair given by {@code --diff=CLIENT,SERVER}.
+     */
+    private static void compareMatrix(List<String> files, Map<String, String> options) throws IOException, InterruptedException, ExecutionException {
+        List<String> versions = new ArrayList<>(new LinkedHashSet<>(files));
+        List<String> pair = split(options.get("diff"));
+        if (versions.size() < 2 || (options.containsKey("diff") && (pair.size() != 2 || !versions.containsAll(pair)))) {
+            System.out.println("Incorrect arguments");
+            return;
+        }
+        for (String version : versions)
+            if (!isFile(version)) {
+                System.out.println("File not found: " + version);
+                return;
+            }
+
+        int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompatibilityMatrix matrix = new CompatibilityMatrix(executor);
+            Map<String, Future<Swagger>> specs = new LinkedHashMap<>();
+            for (String version : pair.isEmpty() ? versions : pair)
+                specs.put(version, executor.submit(() -> SwaggerSnapshot.load(version)));
+            for (Map.Entry<String, Future<Swagger>> entry : specs.entrySet())
+                matrix.add(entry.getKey(), entry.getValue().get());
+            if (pair.isEmpty())
+                matrix.write(System.out);
+            else
+                System.out.print(matrix.compare(pair.get(0), pair.get(1)));
+            System.out.println();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Validates recorded payloads against the first file, every other file holds records as JSON lines. The report is
+     * keyed by capture file.
+     */
+    private static void validatePayloads(List<String> files, Map<String, String> options) throws IOException {
+        if (files.size() < 2)
+            System.out.println("Incorrect arguments");
+        else {
+            for (String file : files)
+                if (!isFile(file)) {
+                    System.out.println("File not found: " + file);
+                    return;
+                }
+
+            PayloadValidator validator = new PayloadValidator(ComparisonPlan.compile(SwaggerSnapshot.load(files.get(0))));
+            List<File> captures = new ArrayList<>();
+            for (String file : new LinkedHashSet<>(files.subList(1, files.size())))
+                captures.add(new File(file));
+            if (options.containsKey("output")) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.get("output")))) {
+                    validator.validate(captures, out);
+                }
+            } else {
+                validator.validate(captures, System.out);
+                System.out.println();
+            }
+            System.out.println(String.format("Validated %d records, %d invalid", validator.getRecords(), validator.getInvalidRecords()));
+            if (validator.getInvalidRecords() > 0)
+                System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the given spec once and writes it as a snapshot that can be passed instead of the spec.
+     */
+    private static void writeSnapshot(List<String> files, String output) throws IOException {
+        if (files.size() != 1 || output.isEmpty())
+            System.out.println("Incorrect arguments");
+        else if (!isFile(files.get(0)))
+            System.out.println("File not found: " + files.get(0));
+        else {
+            SwaggerSnapshot.write(new SwaggerParser().read(files.get(0)), new File(output));
+            System.out.println("Snapshot written to " + output);
+        }
+    }
+
+    /**
+     * Splits arguments into {@code --name[=value]} options and positional arguments.
+     */
+    private static Map<String, String> parseOptions(String[] args, List<String> positional) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int index = arg.indexOf('=');
+                if (index < 0)
+                    options.put(arg.substring(2), "");
+                else
+                    options.put(arg.substring(2, index), arg.substring(index + 1));
+            } else
+                positional.add(arg);
+        }
+        return options;
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        if (value != null)
+            for (String item : value.split(","))
+                if (!item.trim().isEmpty())
+                    values.add(item.trim());
+        return values;
+    }
+
+    private static ForkJoinPool createPool(String parallelism) {
+        return parallelism.isEmpty() ? ForkJoinPool.commonPool() : new ForkJoinPool(Integer.parseInt(parallelism));
+    }
+
     private static boolean isFile(String path) {
         File file = new File(path);
         return file.exists() && !file.isDirectory();
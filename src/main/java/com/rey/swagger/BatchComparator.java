@@ -0,0 +1,123 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import v2.io.swagger.models.Swagger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares one baseline spec against many candidate specs. The baseline is parsed and compiled into a
+ * {@link ComparisonPlan} once and shared by every comparison, candidates are read, as snapshots or specs, and
+ * compared on the given executor.
+ */
+public class BatchComparator {
+
+    private final ComparisonPlan baseline;
+    private final ExecutorService executor;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BatchComparator(Swagger baseline, ExecutorService executor) {
+        this(new ResolvedSwagger(baseline), executor);
+    }
+
+    public BatchComparator(ResolvedSwagger baseline, ExecutorService executor) {
+        this.baseline = baseline.getPlan();
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the candidate paths listed in a manifest, one per line. Blank lines and lines starting with
+     * {@code #} are ignored.
+     */
+    public static List<String> readManifest(Path manifest) throws IOException {
+        try (Stream<String> lines = Files.lines(manifest)) {
+            return lines
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Writes one report entry per candidate, keyed by the candidate path and in the given order. Entries are
+     * written as soon as they and all entries before them are done.
+     */
+    public void compare(List<String> candidates, OutputStream out) throws IOException {
+        List<Future<Result>> results = new ArrayList<>();
+        for (String candidate : candidates)
+            results.add(executor.submit(() -> compare(candidate)));
+
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            for (int i = 0; i < candidates.size(); i++) {
+                Result result = await(results.get(i));
+                generator.writeFieldName(candidates.get(i));
+                if (result.report != null)
+                    generator.writeRawValue(result.report);
+                else
+                    generator.writeString(result.error);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private Result compare(String candidate) {
+        File file = new File(candidate);
+        if (!file.exists() || file.isDirectory())
+            return Result.error("File not found: " + candidate);
+
+        try {
+            Swagger actual = SwaggerSnapshot.load(candidate);
+            if (actual == null)
+                return Result.error("Unable to parse: " + candidate);
+
+            return Result.report(new SwaggerComparator(baseline, new ResolvedSwagger(actual)).compare());
+        } catch (Exception e) {
+            return Result.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static Result await(Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for comparison", e);
+        } catch (ExecutionException e) {
+            return Result.error(String.valueOf(e.getCause()));
+        }
+    }
+
+    private static class Result {
+
+        private final String report;
+        private final String error;
+
+        private Result(String report, String error) {
+            this.report = report;
+            this.error = error;
+        }
+
+        static Result report(String report) {
+            return new Result(report, null);
+        }
+
+        static Result error(String error) {
+            return new Result(null, error);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps parsed specs in memory and serves comparisons over HTTP on the loopback interface.
+ * <p>
+ * {@code GET /compare?expected=FILE&actual=FILE} compares two files. {@code POST /compare} takes a JSON body
+ * with {@code expected}/{@code actual} file paths or {@code expectedSpec}/{@code actualSpec} spec contents, in
+ * any combination. The response is the same JSON that {@link SwaggerComparator#compare()} returns. A cached spec
+ * keeps its {@link ComparisonPlan}, so it is only compiled again once the spec is evicted.
+ */
+public class CompareServer {
+
+    private final HttpServer server;
+    private final SpecCache cache;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ComparisonMetrics metrics;
+
+    public CompareServer(int port, int cacheSize, ExecutorService executor) throws IOException {
+        this.cache = new SpecCache(cacheSize);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/compare", this::handleCompare);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * Aggregates the metrics of every request into the given instance, typically one registered with JMX.
+     */
+    public void setMetrics(ComparisonMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleCompare(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> request;
+            if ("GET".equals(exchange.getRequestMethod()))
+                request = parseQuery(exchange.getRequestURI().getRawQuery());
+            else if ("POST".equals(exchange.getRequestMethod()))
+                request = parseBody(exchange.getRequestBody());
+            else {
+                respond(exchange, 405, error("Method not allowed"));
+                return;
+            }
+
+            ResolvedSwagger expected = getSpec(request, "expected");
+            ResolvedSwagger actual = getSpec(request, "actual");
+            SwaggerComparator swaggerComparator = new SwaggerComparator(expected.getPlan(), actual);
+            if (metrics != null)
+                swaggerComparator.setMetrics(metrics, false);
+            respond(exchange, 200, swaggerComparator.compare());
+        } catch (IllegalArgumentException | ReferenceNotFoundException | IOException e) {
+            respond(exchange, 400, error(String.valueOf(e.getMessage())));
+        } catch (Exception e) {
+            respond(exchange, 500, error(String.valueOf(e)));
+        }
+    }
+
+    private ResolvedSwagger getSpec(Map<String, String> request, String name) throws IOException {
+        if (request.get(name + "Spec") != null)
+            return cache.getContent(request.get(name + "Spec"));
+        if (request.get(name) != null)
+            return cache.getFile(request.get(name));
+        throw new IllegalArgumentException("Missing " + name + " spec");
+    }
+
+    private Map<String, String> parseBody(InputStream in) throws IOException {
+        Map<String, String> request = new HashMap<>();
+        mapper.readTree(in).fields().forEachRemaining(entry -> {
+            JsonNode value = entry.getValue();
+            request.put(entry.getKey(), value.isNull() ? null : value.asText());
+        });
+        return request;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> request = new HashMap<>();
+        if (query != null)
+            for (String pair : query.split("&")) {
+                int index = pair.indexOf('=');
+                if (index > 0)
+                    request.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"), URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+            }
+        return request;
+    }
+
+    private String error(String message) {
+        return mapper.createObjectNode().put("error", message).toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
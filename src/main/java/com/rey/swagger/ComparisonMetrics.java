@@ -0,0 +1,193 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counters and per-path timings of one or more comparisons. Safe to share between comparators running
+ * concurrently, e.g. to aggregate all requests of a {@link CompareServer}. Comparators without metrics do not
+ * pay for any of this.
+ */
+public class ComparisonMetrics implements ComparisonMetricsMBean {
+
+    private final int slowestCount;
+
+    private final LongAdder paths = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder parameters = new LongAdder();
+    private final LongAdder properties = new LongAdder();
+    private final LongAdder dereferences = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final Map<String, LongAdder> pathTimes = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private ObjectName objectName;
+
+    public ComparisonMetrics() {
+        this(10);
+    }
+
+    public ComparisonMetrics(int slowestCount) {
+        this.slowestCount = slowestCount;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under {@code com.rey.swagger:type=ComparisonMetrics}.
+     */
+    public synchronized ComparisonMetrics register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.rey.swagger", "type", "ComparisonMetrics");
+        if (name != null)
+            objectName = new ObjectName(objectName + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+        return this;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server if {@link #register} was called.
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    void path(String key, long nanos) {
+        paths.increment();
+        addPathTime(key, nanos);
+    }
+
+    void addPathTime(String key, long nanos) {
+        pathTimes.computeIfAbsent(key, k -> new LongAdder()).add(nanos);
+    }
+
+    void operation() {
+        operations.increment();
+    }
+
+    void parameter() {
+        parameters.increment();
+    }
+
+    void dereference(Object original, Object resolved) {
+        if (original != resolved)
+            dereferences.increment();
+    }
+
+    void dereference(boolean dereferenced) {
+        if (dereferenced)
+            dereferences.increment();
+    }
+
+    void enterProperty() {
+        properties.increment();
+        int[] current = depth.get();
+        current[0]++;
+        if (current[0] > maxDepth.get())
+            maxDepth.accumulateAndGet(current[0], Math::max);
+    }
+
+    void exitProperty() {
+        depth.get()[0]--;
+    }
+
+    /**
+     * Resets the property depth of the current thread, around each traversal.
+     */
+    void resetDepth() {
+        depth.get()[0] = 0;
+    }
+
+    @Override
+    public long getPaths() {
+        return paths.sum();
+    }
+
+    @Override
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    @Override
+    public long getParameters() {
+        return parameters.sum();
+    }
+
+    @Override
+    public long getProperties() {
+        return properties.sum();
+    }
+
+    @Override
+    public long getDereferences() {
+        return dereferences.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getTotalPathTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(pathTimes.values().stream().mapToLong(LongAdder::sum).sum());
+    }
+
+    @Override
+    public String[] getSlowestPaths() {
+        return slowest().stream()
+                .map(entry -> entry.getKey() + ": " + TimeUnit.NANOSECONDS.toMicros(entry.getValue()) + "us")
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        paths.reset();
+        operations.reset();
+        parameters.reset();
+        properties.reset();
+        dereferences.reset();
+        maxDepth.set(0);
+        pathTimes.clear();
+    }
+
+    public ObjectNode toJson(ObjectMapper mapper) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("paths", getPaths());
+        node.put("operations", getOperations());
+        node.put("parameters", getParameters());
+        node.put("properties", getProperties());
+        node.put("dereferences", getDereferences());
+        node.put("maxDepth", getMaxDepth());
+        node.put("totalPathTimeMillis", getTotalPathTimeMillis());
+        ArrayNode slowestPaths = node.putArray("slowestPaths");
+        slowest().forEach(entry -> slowestPaths.addObject()
+                .put("path", entry.getKey())
+                .put("micros", TimeUnit.NANOSECONDS.toMicros(entry.getValue())));
+        return node;
+    }
+
+    private List<Map.Entry<String, Long>> slowest() {
+        return pathTimes.entrySet().stream()
+                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()))
+                .sorted(Comparator.comparing((Map.Entry<String, Long> entry) -> entry.getValue()).reversed())
+                .limit(slowestCount)
+                .collect(Collectors.toList());
+    }
+}
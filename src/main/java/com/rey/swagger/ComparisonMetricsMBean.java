@@ -0,0 +1,22 @@
+package com.rey.swagger;
+
+public interface ComparisonMetricsMBean {
+
+    long getPaths();
+
+    long getOperations();
+
+    long getParameters();
+
+    long getProperties();
+
+    long getDereferences();
+
+    int getMaxDepth();
+
+    long getTotalPathTimeMillis();
+
+    String[] getSlowestPaths();
+
+    void reset();
+}
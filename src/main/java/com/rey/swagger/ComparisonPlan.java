@@ -0,0 +1,452 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.ArrayModel;
+import v2.io.swagger.models.HttpMethod;
+import v2.io.swagger.models.Model;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+import v2.io.swagger.models.RefModel;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.AbstractSerializableParameter;
+import v2.io.swagger.models.parameters.BodyParameter;
+import v2.io.swagger.models.parameters.Parameter;
+import v2.io.swagger.models.properties.ArrayProperty;
+import v2.io.swagger.models.properties.BooleanProperty;
+import v2.io.swagger.models.properties.DateProperty;
+import v2.io.swagger.models.properties.DateTimeProperty;
+import v2.io.swagger.models.properties.DoubleProperty;
+import v2.io.swagger.models.properties.FloatProperty;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.LongProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.PasswordProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.properties.StringProperty;
+import v2.io.swagger.models.properties.UUIDProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The expected side of a comparison compiled into a tree of checks: references are resolved, structural hashes
+ * computed, the checks of each property picked by its type and enum values loaded into sets. A plan is
+ * thread-safe and can be run against any number of actual specs with
+ * {@link SwaggerComparator#SwaggerComparator(ComparisonPlan, ResolvedSwagger)}.
+ * <p>
+ * Nodes are never changed once compiled. Targets of references are compiled on first use, so recursive
+ * definitions compile to a finite plan.
+ */
+public final class ComparisonPlan {
+
+    private final ResolvedSwagger expected;
+
+    private final Map<String, OperationPlan> operations = new ConcurrentHashMap<>();
+    private final Map<String, PropertyPlan> properties = new ConcurrentHashMap<>();
+    private final Map<String, ModelPlan> models = new ConcurrentHashMap<>();
+
+    ComparisonPlan(ResolvedSwagger expected) {
+        this.expected = expected;
+    }
+
+    /**
+     * Compiles every operation of the given spec, along with all schemas they reach.
+     */
+    public static ComparisonPlan compile(Swagger expected) {
+        return compile(new ResolvedSwagger(expected));
+    }
+
+    public static ComparisonPlan compile(ResolvedSwagger expected) {
+        ComparisonPlan plan = new ComparisonPlan(expected);
+        Map<String, Path> paths = expected.getSwagger().getPaths();
+        if (paths != null)
+            paths.forEach((key, path) -> {
+                if (path.getOperationMap() != null)
+                    path.getOperationMap().keySet().forEach(method -> plan.operation(key, method));
+            });
+        if (expected.getSwagger().getDefinitions() != null)
+            expected.getSwagger().getDefinitions().keySet().forEach(name -> {
+                String ref = new RefProperty(name).get$ref();
+                plan.properties.computeIfAbsent(ref, plan::compileRef);
+                plan.models.computeIfAbsent(ref, plan::compileRefModel);
+            });
+        return plan;
+    }
+
+    public ResolvedSwagger getExpected() {
+        return expected;
+    }
+
+    OperationPlan operation(String path, HttpMethod method) {
+        return operations.computeIfAbsent(method + " " + path,
+                key -> compileOperation(expected.getSwagger().getPath(path).getOperationMap().get(method)));
+    }
+
+    /**
+     * Returns the plan of the target of a property reference.
+     */
+    PropertyPlan resolve(PropertyPlan plan) {
+        return plan.ref == null ? plan : properties.computeIfAbsent(plan.ref, this::compileRef);
+    }
+
+    ModelPlan resolve(ModelPlan plan) {
+        return plan.ref == null ? plan : models.computeIfAbsent(plan.ref, this::compileRefModel);
+    }
+
+    private OperationPlan compileOperation(Operation operation) {
+        Map<String, List<ParameterPlan>> parametersByIn = new LinkedHashMap<>();
+        if (operation.getParameters() != null)
+            for (Parameter parameter : operation.getParameters()) {
+                ParameterPlan plan = compileParameter(expected.dereferenceParameter(parameter), parameter);
+                parametersByIn.computeIfAbsent(plan.in, in -> new ArrayList<>()).add(plan);
+            }
+
+        Map<String, ResponsePlan> responses = null;
+        if (operation.getResponses() != null) {
+            responses = new LinkedHashMap<>();
+            for (Map.Entry<String, Response> entry : operation.getResponses().entrySet()) {
+                Response response = expected.dereferenceResponse(entry.getValue());
+                responses.put(entry.getKey(), new ResponsePlan(entry.getValue() != response, expected.getHasher().hashResponse(response),
+                        response.getSchema() == null ? null : compileProperty(response.getSchema())));
+            }
+        }
+        return new OperationPlan(parametersByIn, responses);
+    }
+
+    private ParameterPlan compileParameter(Parameter parameter, Parameter original) {
+        long hash = expected.getHasher().hashParameter(parameter);
+        if (parameter instanceof BodyParameter)
+            return new ParameterPlan(parameter, original != parameter, hash, compileModel(((BodyParameter) parameter).getSchema()),
+                    null, null, null, null, null);
+        if (parameter instanceof AbstractSerializableParameter) {
+            AbstractSerializableParameter<?> serializable = (AbstractSerializableParameter<?>) parameter;
+            return new ParameterPlan(parameter, original != parameter, hash, null, serializable.getType(), serializable.getFormat(),
+                    serializable.getPattern(), new EnumPlan(serializable.getEnum()),
+                    serializable.getItems() == null ? null : compileProperty(serializable.getItems()));
+        }
+        return new ParameterPlan(parameter, original != parameter, hash, null, null, null, null, null, null);
+    }
+
+    private ModelPlan compileModel(Model model) {
+        if (model == null)
+            return null;
+        if (model instanceof RefModel)
+            return new ModelPlan(((RefModel) model).get$ref(), StructuralHasher.UNHASHABLE, null, false, null);
+        return compileResolvedModel(model);
+    }
+
+    private ModelPlan compileRefModel(String ref) {
+        return compileResolvedModel(expected.dereference(ref));
+    }
+
+    private ModelPlan compileResolvedModel(Model model) {
+        if (model instanceof ArrayModel) {
+            Property items = ((ArrayModel) model).getItems();
+            return new ModelPlan(null, expected.getHasher().hashModel(model), compileProperties(model.getProperties()), true,
+                    items == null ? null : compileProperty(items));
+        }
+        return new ModelPlan(null, expected.getHasher().hashModel(model), compileProperties(model.getProperties()), false, null);
+    }
+
+    private PropertyPlan compileProperty(Property property) {
+        if (property instanceof RefProperty)
+            return new PropertyPlan(((RefProperty) property).get$ref(), null, StructuralHasher.UNHASHABLE, null, null);
+        return compileResolvedProperty(property);
+    }
+
+    private PropertyPlan compileRef(String ref) {
+        return compileResolvedProperty(expected.dereferenceProperty(new RefProperty(ref)));
+    }
+
+    /**
+     * Compiles an inline schema children first on an explicit stack, so its depth is not limited by the thread
+     * stack, the same way it is compared. References end the walk, their targets are compiled on first use.
+     */
+    private PropertyPlan compileResolvedProperty(Property root) {
+        Map<Property, PropertyPlan> compiled = new IdentityHashMap<>();
+        Deque<Property> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Property property = stack.peek();
+            boolean ready = true;
+            for (Property child : inlineChildren(property))
+                if (!compiled.containsKey(child)) {
+                    stack.push(child);
+                    ready = false;
+                }
+            if (!ready)
+                continue;
+
+            stack.pop();
+            PropertyPlan items = null;
+            Map<String, PropertyPlan> properties = null;
+            if (property instanceof ArrayProperty && ((ArrayProperty) property).getItems() != null)
+                items = compiledChild(((ArrayProperty) property).getItems(), compiled);
+            else if (property instanceof ObjectProperty && ((ObjectProperty) property).getProperties() != null) {
+                Map<String, PropertyPlan> plans = new LinkedHashMap<>();
+                ((ObjectProperty) property).getProperties().forEach((key, child) -> plans.put(key, compiledChild(child, compiled)));
+                properties = Collections.unmodifiableMap(plans);
+            }
+            compiled.put(property, new PropertyPlan(null, property, expected.getHasher().hashProperty(property), items, properties));
+        }
+        return compiled.get(root);
+    }
+
+    private static List<Property> inlineChildren(Property property) {
+        List<Property> children = new ArrayList<>();
+        if (property instanceof ArrayProperty) {
+            Property items = ((ArrayProperty) property).getItems();
+            if (items != null && !(items instanceof RefProperty))
+                children.add(items);
+        } else if (property instanceof ObjectProperty && ((ObjectProperty) property).getProperties() != null)
+            for (Property child : ((ObjectProperty) property).getProperties().values())
+                if (child != null && !(child instanceof RefProperty))
+                    children.add(child);
+        return children;
+    }
+
+    private PropertyPlan compiledChild(Property child, Map<Property, PropertyPlan> compiled) {
+        if (child == null)
+            return new PropertyPlan(null, null, expected.getHasher().hashProperty(null), null, null);
+        return child instanceof RefProperty ? compileProperty(child) : compiled.get(child);
+    }
+
+    private Map<String, PropertyPlan> compileProperties(Map<String, Property> properties) {
+        if (properties == null)
+            return null;
+        Map<String, PropertyPlan> plans = new LinkedHashMap<>();
+        properties.forEach((key, property) -> plans.put(key, compileProperty(property)));
+        return Collections.unmodifiableMap(plans);
+    }
+
+    private static Function<Property, String> patternAccessor(Property property) {
+        if (property instanceof StringProperty)
+            return p -> ((StringProperty) p).getPattern();
+        if (property instanceof PasswordProperty)
+            return p -> ((PasswordProperty) p).getPattern();
+        if (property instanceof UUIDProperty)
+            return p -> ((UUIDProperty) p).getPattern();
+        return null;
+    }
+
+    private static Function<Property, List<?>> enumAccessor(Property property) {
+        if (property instanceof StringProperty)
+            return p -> ((StringProperty) p).getEnum();
+        if (property instanceof BooleanProperty)
+            return p -> ((BooleanProperty) p).getEnum();
+        if (property instanceof DateProperty)
+            return p -> ((DateProperty) p).getEnum();
+        if (property instanceof DateTimeProperty)
+            return p -> ((DateTimeProperty) p).getEnum();
+        if (property instanceof DoubleProperty)
+            return p -> ((DoubleProperty) p).getEnum();
+        if (property instanceof FloatProperty)
+            return p -> ((FloatProperty) p).getEnum();
+        if (property instanceof IntegerProperty)
+            return p -> ((IntegerProperty) p).getEnum();
+        if (property instanceof LongProperty)
+            return p -> ((LongProperty) p).getEnum();
+        if (property instanceof PasswordProperty)
+            return p -> ((PasswordProperty) p).getEnum();
+        if (property instanceof UUIDProperty)
+            return p -> ((UUIDProperty) p).getEnum();
+        return null;
+    }
+
+    static final class OperationPlan {
+
+        final Map<String, List<ParameterPlan>> parametersByIn;
+        final Map<String, ResponsePlan> responses;
+
+        OperationPlan(Map<String, List<ParameterPlan>> parametersByIn, Map<String, ResponsePlan> responses) {
+            this.parametersByIn = parametersByIn;
+            this.responses = responses;
+        }
+    }
+
+    static final class ParameterPlan {
+
+        final String in;
+        final String name;
+        final boolean dereferenced;
+        final long hash;
+        final boolean body;
+        final boolean serializable;
+        final ModelPlan schema;
+        final String type;
+        final String format;
+        final String pattern;
+        final EnumPlan enumPlan;
+        final PropertyPlan items;
+
+        ParameterPlan(Parameter parameter, boolean dereferenced, long hash, ModelPlan schema, String type, String format,
+                      String pattern, EnumPlan enumPlan, PropertyPlan items) {
+            this.in = parameter.getIn();
+            this.name = parameter.getName();
+            this.dereferenced = dereferenced;
+            this.hash = hash;
+            this.body = parameter instanceof BodyParameter;
+            this.serializable = parameter instanceof AbstractSerializableParameter;
+            this.schema = schema;
+            this.type = type;
+            this.format = format;
+            this.pattern = pattern;
+            this.enumPlan = enumPlan;
+            this.items = items;
+        }
+    }
+
+    static final class ResponsePlan {
+
+        final boolean dereferenced;
+        final long hash;
+        final PropertyPlan schema;
+
+        ResponsePlan(boolean dereferenced, long hash, PropertyPlan schema) {
+            this.dereferenced = dereferenced;
+            this.hash = hash;
+            this.schema = schema;
+        }
+    }
+
+    /**
+     * A model, or a reference to one when {@link #ref} is set. Items are only set for array models.
+     */
+    static final class ModelPlan {
+
+        final String ref;
+        final long hash;
+        final Map<String, PropertyPlan> properties;
+        final boolean array;
+        final PropertyPlan items;
+
+        ModelPlan(String ref, long hash, Map<String, PropertyPlan> properties, boolean array, PropertyPlan items) {
+            this.ref = ref;
+            this.hash = hash;
+            this.properties = properties;
+            this.array = array;
+            this.items = items;
+        }
+    }
+
+    /**
+     * A property, or a reference to one when {@link #ref} is set. Only the attributes the type of the property
+     * has are set: items for arrays, properties for objects, and pattern and enum accessors for the others.
+     */
+    static final class PropertyPlan {
+
+        final String ref;
+        final long hash;
+        final Class<?> propertyClass;
+        final String type;
+        final String format;
+        final boolean array;
+        final boolean object;
+        final PropertyPlan items;
+        final Map<String, PropertyPlan> properties;
+        final Function<Property, String> patternOf;
+        final String pattern;
+        final Pattern regex;
+        final Function<Property, List<?>> enumOf;
+        final EnumPlan enumPlan;
+
+        PropertyPlan(String ref, Property property, long hash, PropertyPlan items, Map<String, PropertyPlan> properties) {
+            this.ref = ref;
+            this.hash = hash;
+            this.propertyClass = property == null ? null : property.getClass();
+            this.type = property == null ? null : property.getType();
+            this.format = property == null ? null : property.getFormat();
+            this.array = property instanceof ArrayProperty;
+            this.object = property instanceof ObjectProperty;
+            this.items = items;
+            this.properties = properties;
+            this.patternOf = array || object ? null : patternAccessor(property);
+            this.pattern = patternOf == null ? null : patternOf.apply(property);
+            this.regex = compile(pattern);
+            this.enumOf = array || object ? null : enumAccessor(property);
+            this.enumPlan = enumOf == null ? null : new EnumPlan(enumOf.apply(property));
+        }
+    }
+
+    /**
+     * Compiles a pattern for validating values, an invalid one is not checked.
+     */
+    private static Pattern compile(String pattern) {
+        if (pattern == null)
+            return null;
+        try {
+            return Pattern.compile(pattern);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Expected enum values, deduplicated in order, as a set and as a set of their texts for matching values of
+     * payloads. Numbers are written without trailing zeros so {@code 1}, {@code 1.0} and {@code 1L} match.
+     */
+    static final class EnumPlan {
+
+        final boolean present;
+        final List<Object> values;
+        final Set<Object> valueSet;
+        final Set<String> texts;
+
+        EnumPlan(List<?> values) {
+            this.present = values != null;
+            Set<Object> distinct = values == null ? Collections.emptySet() : new LinkedHashSet<>(values);
+            this.values = Collections.unmodifiableList(new ArrayList<>(distinct));
+            this.valueSet = Collections.unmodifiableSet(new HashSet<>(distinct));
+            Set<String> texts = new HashSet<>();
+            for (Object value : distinct)
+                texts.add(value instanceof Number ? text(new BigDecimal(value.toString())) : String.valueOf(value));
+            this.texts = Collections.unmodifiableSet(texts);
+        }
+
+        static String text(BigDecimal number) {
+            return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+        }
+
+        /**
+         * Returns the expected values that are not in the actual ones.
+         */
+        List<Object> missing(List<?> actual) {
+            if (values.isEmpty())
+                return Collections.emptyList();
+            Set<?> actualSet = actual == null ? Collections.emptySet() : new HashSet<>(actual);
+            List<Object> missing = new ArrayList<>();
+            for (Object value : values)
+                if (!actualSet.contains(value))
+                    missing.add(value);
+            return missing;
+        }
+
+        /**
+         * Returns the actual values that are not expected, in order and without duplicates.
+         */
+        List<Object> extra(List<?> actual) {
+            if (actual == null || actual.isEmpty())
+                return Collections.emptyList();
+            Set<Object> extra = new LinkedHashSet<>();
+            for (Object value : actual)
+                if (!valueSet.contains(value))
+                    extra.add(value);
+            return new ArrayList<>(extra);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Restricts a comparison to a slice of the expected spec. A path is in scope if it matches one of the path
+ * globs, an operation is in scope if it has one of the tags or one of the operation ids. An empty list of
+ * globs, tags or operation ids does not restrict anything.
+ * <p>
+ * In globs, {@code **} matches any characters, {@code *} and {@code ?} match any characters or a single
+ * character within one path segment. A trailing {@code /**} also matches the path without it, e.g.
+ * {@code /billing/**} matches {@code /billing}.
+ */
+public class ComparisonScope {
+
+    private final List<String> globs = new ArrayList<>();
+    private final List<Pattern> pathPatterns = new ArrayList<>();
+    private final Set<String> tags = new HashSet<>();
+    private final Set<String> operationIds = new HashSet<>();
+
+    public ComparisonScope paths(Collection<String> globs) {
+        for (String glob : globs) {
+            this.globs.add(glob);
+            this.pathPatterns.add(toPattern(glob));
+        }
+        return this;
+    }
+
+    public ComparisonScope tags(Collection<String> tags) {
+        this.tags.addAll(tags);
+        return this;
+    }
+
+    public ComparisonScope operationIds(Collection<String> operationIds) {
+        this.operationIds.addAll(operationIds);
+        return this;
+    }
+
+    /**
+     * Returns the paths in scope, each holding only its operations in scope. Paths left without operations
+     * are dropped, unless no tag or operation id was given.
+     */
+    Map<String, Path> filter(Map<String, Path> paths) {
+        Map<String, Path> result = new LinkedHashMap<>();
+        paths.forEach((key, path) -> {
+            if (!includes(key))
+                return;
+
+            if (tags.isEmpty() && operationIds.isEmpty()) {
+                result.put(key, path);
+                return;
+            }
+
+            Path filtered = new Path();
+            if (path.getOperationMap() != null)
+                path.getOperationMap().forEach((method, operation) -> {
+                    if (includes(operation))
+                        filtered.set(method.name().toLowerCase(), operation);
+                });
+            if (!filtered.getOperationMap().isEmpty())
+                result.put(key, filtered);
+        });
+        return result;
+    }
+
+    boolean includes(String path) {
+        if (pathPatterns.isEmpty())
+            return true;
+        for (Pattern pattern : pathPatterns)
+            if (pattern.matcher(path).matches())
+                return true;
+        return false;
+    }
+
+    boolean includes(Operation operation) {
+        if (operationIds.contains(operation.getOperationId()))
+            return true;
+        if (operation.getTags() != null)
+            for (String tag : operation.getTags())
+                if (tags.contains(tag))
+                    return true;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "paths=" + globs + ", tags=" + new TreeSet<>(tags) + ", operationIds=" + new TreeSet<>(operationIds);
+    }
+
+    private static Pattern toPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+
+            boolean trailing = glob.startsWith("/**", i - 1) && i + 2 == glob.length();
+            if (trailing)
+                literal.setLength(literal.length() - 1);
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (trailing) {
+                regex.append("(/.*)?");
+                i++;
+            } else if (c == '?')
+                regex.append("[^/]");
+            else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else
+                regex.append("[^/]*");
+        }
+        if (literal.length() > 0)
+            regex.append(Pattern.quote(literal.toString()));
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import v2.io.swagger.models.Swagger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pairwise backward compatibility of many versions of a spec: a client built against one version can talk to a
+ * server of another if every path, operation and field the client expects is found on the server. Each version
+ * is resolved once and its reference and hash caches are shared by all pairs it takes part in. Its
+ * {@link ComparisonPlan} is compiled once too, and reused for every server it is compared against as a client.
+ */
+public class CompatibilityMatrix {
+
+    private final Map<String, ComparisonPlan> versions = new LinkedHashMap<>();
+    private final ExecutorService executor;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public CompatibilityMatrix(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void add(String version, Swagger swagger) {
+        add(version, new ResolvedSwagger(swagger));
+    }
+
+    public void add(String version, ResolvedSwagger swagger) {
+        versions.put(version, swagger.getPlan());
+    }
+
+    public List<String> getVersions() {
+        return new ArrayList<>(versions.keySet());
+    }
+
+    /**
+     * Returns the matrix in the order the versions were added, rows are clients and columns are servers. Pairs
+     * are compared on the executor and each stops at its first difference. A pair whose comparison fails, e.g.
+     * on a dangling reference, is incompatible and the other pairs are still compared.
+     */
+    public boolean[][] compute() throws IOException {
+        List<ComparisonPlan> specs = new ArrayList<>(versions.values());
+        int size = specs.size();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int client = 0; client < size; client++)
+            for (int server = 0; server < size; server++) {
+                if (client == server)
+                    continue;
+                ComparisonPlan expected = specs.get(client);
+                ResolvedSwagger actual = specs.get(server).getExpected();
+                results.add(executor.submit(() -> new SwaggerComparator(expected, actual).isCompatible()));
+            }
+
+        boolean[][] matrix = new boolean[size][size];
+        int index = 0;
+        for (int client = 0; client < size; client++)
+            for (int server = 0; server < size; server++)
+                matrix[client][server] = client == server || await(results.get(index++));
+        return matrix;
+    }
+
+    /**
+     * Writes the versions and the matrix as {@code {"versions":[...],"compatible":[[...],...]}}.
+     */
+    public void write(OutputStream out) throws IOException {
+        boolean[][] matrix = compute();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("versions");
+            for (String version : versions.keySet())
+                generator.writeString(version);
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("compatible");
+            for (boolean[] row : matrix) {
+                generator.writeStartArray();
+                for (boolean compatible : row)
+                    generator.writeBoolean(compatible);
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Returns the full report of a client version against a server version, reusing the caches of both.
+     */
+    public String compare(String client, String server) throws JsonProcessingException {
+        return new SwaggerComparator(get(client), get(server).getExpected()).compare();
+    }
+
+    private ComparisonPlan get(String version) {
+        ComparisonPlan swagger = versions.get(version);
+        if (swagger == null)
+            throw new IllegalArgumentException("Unknown version: " + version);
+        return swagger;
+    }
+
+    private static boolean await(Future<Boolean> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for comparison", e);
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+}
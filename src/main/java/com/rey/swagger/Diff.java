@@ -0,0 +1,44 @@
+package com.rey.swagger;
+
+/**
+ * One entry of the report. The message is only rendered when asked for.
+ */
+public final class Diff {
+
+    private final Location location;
+    private final DiffKind kind;
+    private final Object expected;
+    private final Object actual;
+
+    Diff(Location location, DiffKind kind, Object expected, Object actual) {
+        this.location = location;
+        this.kind = kind;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public DiffKind getKind() {
+        return kind;
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public Object getActual() {
+        return actual;
+    }
+
+    public String getMessage() {
+        return kind.render(expected, actual);
+    }
+
+    @Override
+    public String toString() {
+        return location + ": " + getMessage();
+    }
+}
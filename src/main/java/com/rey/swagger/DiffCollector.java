@@ -0,0 +1,37 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.function.Consumer;
+
+/**
+ * Passes every difference to a consumer as a {@link Diff}, without rendering any message.
+ */
+class DiffCollector implements DiffWriter {
+
+    private final Consumer<Diff> consumer;
+    private final LocationStack scopes = new LocationStack();
+
+    DiffCollector(Consumer<Diff> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void begin(String name) {
+        scopes.push(name);
+    }
+
+    @Override
+    public void end() {
+        scopes.pop();
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        consumer.accept(new Diff(scopes.child(name), kind, expected, actual));
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+    }
+}
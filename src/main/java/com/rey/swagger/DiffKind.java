@@ -0,0 +1,63 @@
+package com.rey.swagger;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public enum DiffKind {
+
+    NOT_FOUND(null),
+    TYPE("type"),
+    FORMAT("format"),
+    PATTERN("pattern"),
+    /**
+     * Expected value is the list of missing enum values, actual value the list of unexpected ones.
+     */
+    ENUM("enum"),
+    /**
+     * Informational entry that is not a difference, expected value holds its text.
+     */
+    NOTE(null);
+
+    private final String field;
+
+    DiffKind(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Returns the report field a difference of this kind is written to, or null if the field depends on the
+     * difference.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Renders a difference of this kind to the message used in the JSON report.
+     */
+    public String render(Object expected, Object actual) {
+        switch (this) {
+            case NOT_FOUND:
+                return "Not found";
+            case ENUM:
+                List<?> missing = (List<?>) expected;
+                List<?> extra = (List<?>) actual;
+                if (extra.isEmpty())
+                    return String.format("Expected contains %s but not found", join(missing));
+                else if (missing.isEmpty())
+                    return String.format("Actual contains unexpected %s", join(extra));
+                else
+                    return String.format("Expected contains %s but not found; actual contains unexpected %s", join(missing), join(extra));
+            case NOTE:
+                return String.valueOf(expected);
+            default:
+                return String.format("Expected '%s' but actual is '%s'", expected, actual);
+        }
+    }
+
+    private static String join(List<?> values) {
+        return values.stream()
+                .map(value -> "'" + value + "'")
+                .collect(Collectors.joining(", "));
+    }
+}
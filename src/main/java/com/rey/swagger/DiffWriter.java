@@ -0,0 +1,42 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Receives the report while the comparison runs. A scope opened with {@link #begin(String)} only shows up in
+ * the report if something is written into it before the matching {@link #end()}.
+ * <p>
+ * Differences are passed as typed values, writers that need a message render it with
+ * {@link DiffKind#render(Object, Object)}.
+ */
+interface DiffWriter {
+
+    void begin(String name);
+
+    void end();
+
+    void put(DiffKind kind, String name, Object expected, Object actual);
+
+    /**
+     * Writes a section that is not part of the differences, e.g. metrics.
+     */
+    void putNode(String name, JsonNode node);
+
+    default void note(String name, String value) {
+        put(DiffKind.NOTE, name, value, null);
+    }
+
+    default void notFound(String name) {
+        put(DiffKind.NOT_FOUND, name, null, null);
+    }
+
+    default void mismatch(DiffKind kind, Object expected, Object actual) {
+        put(kind, kind.getField(), expected, actual);
+    }
+
+    default void enumMismatch(List<?> missing, List<?> extra) {
+        put(DiffKind.ENUM, DiffKind.ENUM.getField(), missing, extra);
+    }
+}
@@ -0,0 +1,48 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Stops the comparison at the first difference by throwing {@link Incompatible}. Nothing is rendered, only
+ * the location of the difference is built.
+ */
+class FailFastDiffWriter implements DiffWriter {
+
+    private final LocationStack scopes = new LocationStack();
+
+    @Override
+    public void begin(String name) {
+        scopes.push(name);
+    }
+
+    @Override
+    public void end() {
+        scopes.pop();
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        if (kind != DiffKind.NOTE)
+            throw new Incompatible(new Diff(scopes.child(name), kind, expected, actual));
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+    }
+
+    static class Incompatible extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Diff diff;
+
+        Incompatible(Diff diff) {
+            super(null, null, false, false);
+            this.diff = diff;
+        }
+
+        Diff getDiff() {
+            return diff;
+        }
+    }
+}
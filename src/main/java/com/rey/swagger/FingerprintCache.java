@@ -0,0 +1,95 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Report fragments of a previous run keyed by expected path, each stored with the fingerprint of the inputs
+ * it was computed from. A fragment is reused as long as the fingerprint stays the same.
+ */
+public class FingerprintCache {
+
+    private static final int VERSION = 2;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private int reused = 0;
+    private int compared = 0;
+
+    /**
+     * Loads the cache from the given file. Returns an empty cache if the file does not exist or was written
+     * by another version.
+     */
+    public static FingerprintCache load(File file) throws IOException {
+        FingerprintCache cache = new FingerprintCache();
+        if (!file.isFile())
+            return cache;
+
+        JsonNode root = new ObjectMapper().readTree(file);
+        if (root == null || root.path("version").asInt() != VERSION)
+            return cache;
+
+        root.path("paths").fields().forEachRemaining(entry -> cache.entries.put(entry.getKey(),
+                new Entry(entry.getValue().path("fingerprint").asText(), entry.getValue().get("result"))));
+        return cache;
+    }
+
+    public void save(File file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("version", VERSION);
+        ObjectNode paths = root.putObject("paths");
+        entries.forEach((key, entry) -> {
+            ObjectNode node = paths.putObject(key);
+            node.put("fingerprint", entry.fingerprint);
+            if (entry.result != null)
+                node.set("result", entry.result);
+        });
+        mapper.writeValue(file, root);
+    }
+
+    public int getReusedCount() {
+        return reused;
+    }
+
+    public int getComparedCount() {
+        return compared;
+    }
+
+    synchronized boolean contains(String key, String fingerprint) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.fingerprint.equals(fingerprint);
+    }
+
+    synchronized JsonNode reuse(String key) {
+        reused++;
+        return entries.get(key).result;
+    }
+
+    synchronized void put(String key, String fingerprint, JsonNode result) {
+        compared++;
+        entries.put(key, new Entry(fingerprint, result));
+    }
+
+    synchronized void retain(Collection<String> keys) {
+        entries.keySet().retainAll(keys);
+    }
+
+    private static class Entry {
+
+        private final String fingerprint;
+        private final JsonNode result;
+
+        Entry(String fingerprint, JsonNode result) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+        }
+    }
+}
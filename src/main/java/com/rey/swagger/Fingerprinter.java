@@ -0,0 +1,106 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import v2.io.swagger.models.Path;
+import v2.io.swagger.util.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes a content fingerprint of a path together with every definition, parameter and response it reaches
+ * through {@code $ref}, transitively. Serialized ref targets are memoized, so shared definitions are only
+ * serialized once per document.
+ */
+class Fingerprinter {
+
+    private static final String MISSING = "<missing>";
+
+    private final ResolvedSwagger swagger;
+    private final ObjectMapper mapper = Json.mapper();
+
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    Fingerprinter(ResolvedSwagger swagger) {
+        this.swagger = swagger;
+    }
+
+    String fingerprint(String key) {
+        Path path = swagger.getSwagger().getPath(key);
+        if (path == null)
+            return MISSING;
+
+        MessageDigest digest = Utils.sha256();
+        Set<String> refs = new TreeSet<>();
+        update(digest, serialize(path, refs));
+
+        Deque<String> pending = new ArrayDeque<>(refs);
+        while (!pending.isEmpty()) {
+            for (String ref : getTarget(pending.pop()).refs)
+                if (refs.add(ref))
+                    pending.push(ref);
+        }
+
+        for (String ref : refs) {
+            update(digest, ref);
+            update(digest, getTarget(ref).content);
+        }
+        return Utils.toHex(digest.digest());
+    }
+
+    private Target getTarget(String ref) {
+        Target target = targets.get(ref);
+        if (target == null) {
+            Set<String> refs = new TreeSet<>();
+            Object value;
+            try {
+                value = swagger.dereference(ref);
+            } catch (ReferenceNotFoundException e) {
+                value = null;
+            }
+            target = new Target(value == null ? MISSING : serialize(value, refs), refs);
+            targets.put(ref, target);
+        }
+        return target;
+    }
+
+    private String serialize(Object value, Set<String> refs) {
+        JsonNode node = mapper.valueToTree(value);
+        collectRefs(node, refs);
+        return node.toString();
+    }
+
+    private static void collectRefs(JsonNode node, Set<String> refs) {
+        if (node.isObject()) {
+            JsonNode ref = node.get("$ref");
+            if (ref != null && ref.isTextual())
+                refs.add(ref.asText());
+        }
+        for (Iterator<JsonNode> it = node.elements(); it.hasNext(); )
+            collectRefs(it.next(), refs);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static class Target {
+
+        private final String content;
+        private final Set<String> refs;
+
+        Target(String content, Set<String> refs) {
+            this.content = content;
+            this.refs = refs;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.rey.swagger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Position of a difference in the report, from the expected path down to the differing field. Locations are
+ * linked to their parent, so all differences under the same prefix share its nodes.
+ */
+public final class Location {
+
+    private final Location parent;
+    private final String name;
+    private final int depth;
+
+    private Location(Location parent, String name) {
+        this.parent = parent;
+        this.name = name;
+        this.depth = parent == null ? 1 : parent.depth + 1;
+    }
+
+    static Location of(Location parent, String name) {
+        return new Location(parent, name);
+    }
+
+    public Location getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the first segment, i.e. the expected path key.
+     */
+    public String getRoot() {
+        Location location = this;
+        while (location.parent != null)
+            location = location.parent;
+        return location.name;
+    }
+
+    public List<String> getSegments() {
+        List<String> segments = new ArrayList<>(depth);
+        for (Location location = this; location != null; location = location.parent)
+            segments.add(location.name);
+        Collections.reverse(segments);
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" > ", getSegments());
+    }
+}
@@ -0,0 +1,40 @@
+package com.rey.swagger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names of the scopes currently open in a {@link DiffWriter}. {@link Location}s are only created for a scope
+ * once a difference is found inside it, and then reused for every further difference in the same scope.
+ */
+class LocationStack {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Location> locations = new ArrayList<>();
+
+    void push(String name) {
+        names.add(name);
+    }
+
+    void pop() {
+        names.remove(names.size() - 1);
+        if (locations.size() > names.size())
+            locations.remove(locations.size() - 1);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns the location of the given name within the innermost open scope.
+     */
+    Location child(String name) {
+        Location parent = locations.isEmpty() ? null : locations.get(locations.size() - 1);
+        while (locations.size() < names.size()) {
+            parent = Location.of(parent, names.get(locations.size()));
+            locations.add(parent);
+        }
+        return Location.of(parent, name);
+    }
+}
@@ -0,0 +1,75 @@
+package com.rey.swagger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Segment trie over path templates. Every {@code {...}} in a segment is treated as a wildcard, so
+ * {@code /users/{id}} and {@code /users/{userId}} share the same branch. Lookups cost one map access per
+ * segment, whatever the number of indexed paths.
+ */
+class PathIndex {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{[^}/]*}");
+    private static final String WILDCARD = "{}";
+
+    private final Node root = new Node();
+
+    PathIndex(Iterable<String> templates) {
+        for (String template : templates)
+            add(template);
+    }
+
+    /**
+     * Returns the indexed template matching the given one, or null if there is none.
+     */
+    String find(String template) {
+        Node node = root;
+        for (String segment : template.split("/")) {
+            node = node.children.get(normalize(segment));
+            if (node == null)
+                return null;
+        }
+        return node.template;
+    }
+
+    /**
+     * Returns the indexed template a concrete request path matches, e.g. {@code /users/{id}} for
+     * {@code /users/42}. Literal segments take precedence over variables.
+     */
+    String match(String path) {
+        return match(root, path.split("/"), 0);
+    }
+
+    private String match(Node node, String[] segments, int index) {
+        if (index == segments.length)
+            return node.template;
+        Node literal = node.children.get(segments[index]);
+        String template = literal == null ? null : match(literal, segments, index + 1);
+        if (template == null) {
+            Node variable = node.children.get(WILDCARD);
+            if (variable != null)
+                template = match(variable, segments, index + 1);
+        }
+        return template;
+    }
+
+    private void add(String template) {
+        Node node = root;
+        for (String segment : template.split("/"))
+            node = node.children.computeIfAbsent(normalize(segment), key -> new Node());
+        if (node.template == null)
+            node.template = template;
+    }
+
+    private static String normalize(String segment) {
+        return segment.indexOf('{') < 0 ? segment : VARIABLE.matcher(segment).replaceAll(WILDCARD);
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private String template;
+    }
+}
@@ -0,0 +1,431 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.rey.swagger.ComparisonPlan.EnumPlan;
+import com.rey.swagger.ComparisonPlan.ModelPlan;
+import com.rey.swagger.ComparisonPlan.OperationPlan;
+import com.rey.swagger.ComparisonPlan.ParameterPlan;
+import com.rey.swagger.ComparisonPlan.PropertyPlan;
+import com.rey.swagger.ComparisonPlan.ResponsePlan;
+import v2.io.swagger.models.HttpMethod;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Validates JSON request and response bodies against the operations of an expected spec, with the type,
+ * format, pattern and enum rules the comparison applies to properties. Payloads are read with a streaming
+ * parser, no tree is built, and the rules come from a {@link ComparisonPlan} so patterns are compiled once.
+ * <p>
+ * Recorded traffic is read as a sequence of JSON records, usually one per line:
+ * <pre>{"method":"GET","path":"/users/42","status":200,"request":{...},"response":{...}}</pre>
+ * Records can also be given as one JSON array. The report is keyed by the position of each invalid record in
+ * the stream, starting at 1.
+ * Only body parameters are validated.
+ */
+public class PayloadValidator {
+
+    private static final int MAX_DEPTH = StructuralHasher.MAX_DEPTH;
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern DATE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}[Tt]\\d{2}:\\d{2}:\\d{2}(\\.\\d+)?([Zz]|[+-]\\d{2}:\\d{2})");
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private final ComparisonPlan plan;
+    private final ResolvedSwagger expected;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory = mapper.getFactory();
+
+    private long records;
+    private long invalidRecords;
+
+    public PayloadValidator(ComparisonPlan plan) {
+        this.plan = plan;
+        this.expected = plan.getExpected();
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getInvalidRecords() {
+        return invalidRecords;
+    }
+
+    /**
+     * Validates a request body and returns the report, {@code {}} if it is valid.
+     */
+    public String validateRequest(String method, String path, InputStream body) throws IOException {
+        return validate(method, path, null, body);
+    }
+
+    /**
+     * Validates the body of a response with the given status and returns the report, {@code {}} if it is valid.
+     */
+    public String validateResponse(String method, String path, String status, InputStream body) throws IOException {
+        return validate(method, path, status, body);
+    }
+
+    private String validate(String method, String path, String status, InputStream body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StreamingDiffWriter writer = new StreamingDiffWriter(factory.createGenerator(out));
+             JsonParser parser = factory.createParser(body)) {
+            OperationPlan operation = route(writer, method, path);
+            if (operation != null && parser.nextToken() != null) {
+                if (status == null)
+                    validateRequest(writer, operation, parser);
+                else
+                    validateResponse(writer, operation, status, parser);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Validates every record of the given stream and writes the report of the invalid ones. Returns the number
+     * of invalid records.
+     */
+    public long validate(InputStream in, OutputStream out) throws IOException {
+        long invalid = invalidRecords;
+        try (StreamingDiffWriter writer = new StreamingDiffWriter(factory.createGenerator(out))) {
+            validate(writer, in);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return invalidRecords - invalid;
+    }
+
+    /**
+     * Validates the records of every file and writes a single report keyed by file path, files without invalid
+     * records are left out. Returns the number of invalid records.
+     */
+    public long validate(List<File> files, OutputStream out) throws IOException {
+        long invalid = invalidRecords;
+        try (StreamingDiffWriter writer = new StreamingDiffWriter(factory.createGenerator(out))) {
+            for (File file : files)
+                try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+                    writer.begin(file.getPath());
+                    validate(writer, in);
+                    writer.end();
+                }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return invalidRecords - invalid;
+    }
+
+    private void validate(DiffWriter writer, InputStream in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            long index = 0;
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY)
+                    validateRecord(writer, parser, ++index);
+            } else
+                for (; token != null; token = parser.nextToken())
+                    validateRecord(writer, parser, ++index);
+        }
+    }
+
+    /**
+     * Reads one record. Bodies are validated as they are read unless they come before the fields that select
+     * the operation, then they are buffered as tokens first.
+     */
+    private void validateRecord(DiffWriter writer, JsonParser parser, long index) throws IOException {
+        records++;
+        CountingDiffWriter record = new CountingDiffWriter(writer);
+        record.begin(String.valueOf(index));
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            record.mismatch(DiffKind.TYPE, "object", typeOf(parser.currentToken()));
+            parser.skipChildren();
+        } else {
+            String method = null;
+            String path = null;
+            String status = null;
+            TokenBuffer request = null;
+            TokenBuffer response = null;
+            OperationPlan operation = null;
+            boolean routed = false;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("method".equals(field))
+                    method = parser.getValueAsString();
+                else if ("path".equals(field))
+                    path = parser.getValueAsString();
+                else if ("status".equals(field))
+                    status = parser.getValueAsString();
+                else if ("request".equals(field) || "response".equals(field)) {
+                    boolean isRequest = "request".equals(field);
+                    if (!routed && method != null && path != null) {
+                        operation = route(record, method, path);
+                        routed = true;
+                    }
+                    if (!routed || (!isRequest && status == null)) {
+                        TokenBuffer buffer = new TokenBuffer(parser);
+                        buffer.copyCurrentStructure(parser);
+                        if (isRequest)
+                            request = buffer;
+                        else
+                            response = buffer;
+                    } else if (operation == null)
+                        parser.skipChildren();
+                    else if (isRequest)
+                        validateRequest(record, operation, parser);
+                    else
+                        validateResponse(record, operation, status, parser);
+                    continue;
+                }
+                parser.skipChildren();
+            }
+
+            if (!routed && (request != null || response != null)) {
+                if (method == null || path == null)
+                    record.notFound(method == null ? "method" : "path");
+                else
+                    operation = route(record, method, path);
+            }
+            if (operation != null) {
+                if (request != null)
+                    validateRequest(record, operation, buffered(request));
+                if (response != null) {
+                    if (status == null)
+                        record.notFound("status");
+                    else
+                        validateResponse(record, operation, status, buffered(response));
+                }
+            }
+        }
+        record.end();
+        if (record.count > 0)
+            invalidRecords++;
+    }
+
+    private OperationPlan route(DiffWriter writer, String method, String path) {
+        String template = expected.matchPath(path);
+        HttpMethod httpMethod = parseMethod(method);
+        Path expectedPath = template == null ? null : expected.getSwagger().getPath(template);
+        Map<HttpMethod, Operation> operations = expectedPath == null ? null : expectedPath.getOperationMap();
+        if (httpMethod == null || operations == null || !operations.containsKey(httpMethod)) {
+            writer.notFound(method + " " + path);
+            return null;
+        }
+        return plan.operation(template, httpMethod);
+    }
+
+    private void validateRequest(DiffWriter writer, OperationPlan operation, JsonParser parser) throws IOException {
+        List<ParameterPlan> body = operation.parametersByIn.get("body");
+        if (body == null || body.isEmpty() || body.get(0).schema == null) {
+            parser.skipChildren();
+            return;
+        }
+        writer.begin("request");
+        validateModel(writer, body.get(0).schema, parser);
+        writer.end();
+    }
+
+    private void validateResponse(DiffWriter writer, OperationPlan operation, String status, JsonParser parser) throws IOException {
+        ResponsePlan response = operation.responses == null ? null : operation.responses.get(status);
+        if (response == null && operation.responses != null)
+            response = operation.responses.get("default");
+        if (response == null) {
+            writer.notFound(status);
+            parser.skipChildren();
+            return;
+        }
+        writer.begin(status);
+        if (response.schema == null)
+            parser.skipChildren();
+        else
+            validateValue(writer, response.schema, parser, 0);
+        writer.end();
+    }
+
+    private void validateModel(DiffWriter writer, ModelPlan model, JsonParser parser) throws IOException {
+        ModelPlan resolved = plan.resolve(model);
+        JsonToken token = resolved.array ? JsonToken.START_ARRAY : JsonToken.START_OBJECT;
+        if (parser.currentToken() != token) {
+            writer.mismatch(DiffKind.TYPE, typeOf(token), typeOf(parser.currentToken()));
+            parser.skipChildren();
+        } else if (resolved.array)
+            validateItems(writer, resolved.items, parser, 0);
+        else
+            validateFields(writer, resolved.properties, parser, 0);
+    }
+
+    /**
+     * Validates the value the parser is on and leaves the parser on its last token. Values nested deeper than
+     * {@link #MAX_DEPTH} are skipped.
+     */
+    private void validateValue(DiffWriter writer, PropertyPlan property, JsonParser parser, int depth) throws IOException {
+        PropertyPlan expected = plan.resolve(property);
+        JsonToken token = parser.currentToken();
+        if (depth >= MAX_DEPTH || expected.type == null) {
+            parser.skipChildren();
+            return;
+        }
+
+        String actualType = typeOf(token);
+        if (!expected.type.equals(actualType) && !("number".equals(expected.type) && "integer".equals(actualType))) {
+            writer.mismatch(DiffKind.TYPE, expected.type, actualType);
+            parser.skipChildren();
+        } else if (expected.array)
+            validateItems(writer, expected.items, parser, depth);
+        else if (expected.object)
+            validateFields(writer, expected.properties, parser, depth);
+        else if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+            parser.skipChildren();
+        else if (!validFormat(expected.format, parser))
+            writer.mismatch(DiffKind.FORMAT, expected.format, parser.getText());
+        else if (expected.regex != null && !expected.regex.matcher(parser.getText()).find())
+            writer.mismatch(DiffKind.PATTERN, expected.pattern, parser.getText());
+        else if (expected.enumPlan != null && expected.enumPlan.present)
+            validateEnum(writer, expected.enumPlan, parser);
+    }
+
+    private void validateItems(DiffWriter writer, PropertyPlan items, JsonParser parser, int depth) throws IOException {
+        if (items == null) {
+            parser.skipChildren();
+            return;
+        }
+        writer.begin("items");
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            writer.begin(String.valueOf(index++));
+            validateValue(writer, items, parser, depth + 1);
+            writer.end();
+        }
+        writer.end();
+    }
+
+    private void validateFields(DiffWriter writer, Map<String, PropertyPlan> properties, JsonParser parser, int depth) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            PropertyPlan property = properties == null ? null : properties.get(name);
+            if (property == null)
+                parser.skipChildren();
+            else {
+                writer.begin(name);
+                validateValue(writer, property, parser, depth + 1);
+                writer.end();
+            }
+        }
+    }
+
+    private void validateEnum(DiffWriter writer, EnumPlan expected, JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        String text = token.isNumeric() ? EnumPlan.text(parser.getDecimalValue()) : parser.getText();
+        if (!expected.texts.contains(text))
+            writer.enumMismatch(Collections.emptyList(), Collections.singletonList(text));
+    }
+
+    private static boolean validFormat(String format, JsonParser parser) throws IOException {
+        if (format == null)
+            return true;
+        switch (format) {
+            case "int32":
+                return parser.getNumberType() == JsonParser.NumberType.INT;
+            case "int64":
+                return parser.getNumberType() == JsonParser.NumberType.INT || parser.getNumberType() == JsonParser.NumberType.LONG;
+            case "date":
+                return DATE.matcher(parser.getText()).matches();
+            case "date-time":
+                return DATE_TIME.matcher(parser.getText()).matches();
+            case "uuid":
+                return UUID.matcher(parser.getText()).matches();
+            default:
+                return true;
+        }
+    }
+
+    private static String typeOf(JsonToken token) {
+        switch (token) {
+            case START_OBJECT:
+                return "object";
+            case START_ARRAY:
+                return "array";
+            case VALUE_STRING:
+                return "string";
+            case VALUE_NUMBER_INT:
+                return "integer";
+            case VALUE_NUMBER_FLOAT:
+                return "number";
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return "boolean";
+            default:
+                return "null";
+        }
+    }
+
+    private static HttpMethod parseMethod(String method) {
+        try {
+            return method == null ? null : HttpMethod.valueOf(method.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static JsonParser buffered(TokenBuffer buffer) throws IOException {
+        JsonParser parser = buffer.asParser();
+        parser.nextToken();
+        return parser;
+    }
+
+    /**
+     * Counts the differences written through it, so a record can tell whether it is invalid.
+     */
+    private static class CountingDiffWriter implements DiffWriter {
+
+        private final DiffWriter writer;
+        private int count;
+
+        CountingDiffWriter(DiffWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin(String name) {
+            writer.begin(name);
+        }
+
+        @Override
+        public void end() {
+            writer.end();
+        }
+
+        @Override
+        public void put(DiffKind kind, String name, Object expected, Object actual) {
+            if (kind != DiffKind.NOTE)
+                count++;
+            writer.put(kind, name, expected, actual);
+        }
+
+        @Override
+        public void putNode(String name, JsonNode node) {
+            writer.putNode(name, node);
+        }
+    }
+}
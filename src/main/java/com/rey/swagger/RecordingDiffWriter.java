@@ -0,0 +1,143 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the calls made on it so they can be replayed later into another writer, e.g. to merge results of
+ * parallel tasks in order or to cache the result of a path. Scopes that stay empty are not recorded.
+ */
+class RecordingDiffWriter implements DiffWriter {
+
+    private static final int BEGIN = 0;
+    private static final int END = 1;
+    private static final int PUT = 2;
+    private static final int NODE = 3;
+
+    private final List<Event> events = new ArrayList<>();
+    private final List<Integer> scopes = new ArrayList<>();
+
+    @Override
+    public void begin(String name) {
+        scopes.add(events.size());
+        events.add(new Event(BEGIN, null, name, null, null));
+    }
+
+    @Override
+    public void end() {
+        int begin = scopes.remove(scopes.size() - 1);
+        if (begin == events.size() - 1)
+            events.remove(begin);
+        else
+            events.add(new Event(END, null, null, null, null));
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        events.add(new Event(PUT, kind, name, expected, actual));
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+        events.add(new Event(NODE, null, name, node, null));
+    }
+
+    boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    void replay(DiffWriter writer) {
+        for (Event event : events) {
+            switch (event.type) {
+                case BEGIN:
+                    writer.begin(event.name);
+                    break;
+                case END:
+                    writer.end();
+                    break;
+                case PUT:
+                    writer.put(event.kind, event.name, event.expected, event.actual);
+                    break;
+                default:
+                    writer.putNode(event.name, (JsonNode) event.expected);
+            }
+        }
+    }
+
+    /**
+     * Splits the recording into one recording per top level entry, keyed by the entry name.
+     */
+    Map<String, RecordingDiffWriter> split() {
+        Map<String, RecordingDiffWriter> result = new LinkedHashMap<>();
+        RecordingDiffWriter current = null;
+        int depth = 0;
+        for (Event event : events) {
+            if (depth == 0) {
+                current = new RecordingDiffWriter();
+                result.put(event.name, current);
+            }
+            current.events.add(event);
+            if (event.type == BEGIN)
+                depth++;
+            else if (event.type == END)
+                depth--;
+        }
+        return result;
+    }
+
+    ArrayNode toJson(ObjectMapper mapper) {
+        ArrayNode array = mapper.createArrayNode();
+        for (Event event : events) {
+            ArrayNode node = array.addArray().add(event.type);
+            if (event.type == PUT)
+                node.add(event.kind.name()).add(event.name).add(mapper.valueToTree(event.expected)).add(mapper.valueToTree(event.actual));
+            else if (event.type == NODE)
+                node.add(event.name).add((JsonNode) event.expected);
+            else if (event.type == BEGIN)
+                node.add(event.name);
+        }
+        return array;
+    }
+
+    static RecordingDiffWriter fromJson(ObjectMapper mapper, JsonNode array) {
+        RecordingDiffWriter recording = new RecordingDiffWriter();
+        for (JsonNode node : array) {
+            int type = node.get(0).asInt();
+            if (type == PUT)
+                recording.events.add(new Event(PUT, DiffKind.valueOf(node.get(1).asText()), node.get(2).asText(),
+                        toValue(mapper, node.get(3)), toValue(mapper, node.get(4))));
+            else if (type == NODE)
+                recording.events.add(new Event(NODE, null, node.get(1).asText(), node.get(2), null));
+            else
+                recording.events.add(new Event(type, null, type == BEGIN ? node.get(1).asText() : null, null, null));
+        }
+        return recording;
+    }
+
+    private static Object toValue(ObjectMapper mapper, JsonNode node) {
+        return node == null || node.isNull() ? null : mapper.convertValue(node, Object.class);
+    }
+
+    private static class Event {
+
+        private final int type;
+        private final DiffKind kind;
+        private final String name;
+        private final Object expected;
+        private final Object actual;
+
+        Event(int type, DiffKind kind, String name, Object expected, Object actual) {
+            this.type = type;
+            this.kind = kind;
+            this.name = name;
+            this.expected = expected;
+            this.actual = actual;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.Model;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+import v2.io.swagger.models.RefModel;
+import v2.io.swagger.models.RefResponse;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.Parameter;
+import v2.io.swagger.models.parameters.RefParameter;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.refs.RefType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link Swagger} and resolves each {@code $ref} at most once. A single instance can be shared by
+ * any number of comparators working on the same document.
+ */
+public class ResolvedSwagger {
+
+    private final Swagger swagger;
+
+    private final Map<String, Object> references = new ConcurrentHashMap<>();
+    private final Map<String, ObjectProperty> flattenedProperties = new ConcurrentHashMap<>();
+
+    private volatile PathIndex pathIndex;
+    private volatile Fingerprinter fingerprinter;
+    private volatile StructuralHasher hasher;
+    private volatile ComparisonPlan plan;
+    private final Map<Operation, Map<String, Map<String, Parameter>>> parameterIndexes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResolvedSwagger(Swagger swagger) {
+        this.swagger = swagger;
+    }
+
+    public Swagger getSwagger() {
+        return swagger;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the key of the path matching the given one, either exactly or with differently named path
+     * variables. Returns null if no path matches.
+     */
+    public String findPath(String path) {
+        Map<String, Path> paths = swagger.getPaths();
+        if (paths == null)
+            return null;
+        if (paths.containsKey(path))
+            return path;
+        return getPathIndex().find(path);
+    }
+
+    /**
+     * Returns the template of the path a request to the given concrete path is routed to, or null if there is
+     * none. A query string is ignored, and so is the base path of the spec if the request path starts with it.
+     */
+    public String matchPath(String requestPath) {
+        Map<String, Path> paths = swagger.getPaths();
+        if (paths == null)
+            return null;
+        int query = requestPath.indexOf('?');
+        String path = stripBasePath(query < 0 ? requestPath : requestPath.substring(0, query));
+        if (paths.containsKey(path))
+            return path;
+        return getPathIndex().match(path);
+    }
+
+    private String stripBasePath(String path) {
+        String basePath = swagger.getBasePath();
+        if (basePath == null || basePath.isEmpty() || basePath.equals("/"))
+            return path;
+        if (basePath.endsWith("/"))
+            basePath = basePath.substring(0, basePath.length() - 1);
+        if (path.equals(basePath))
+            return "/";
+        return path.startsWith(basePath + "/") ? path.substring(basePath.length()) : path;
+    }
+
+    private PathIndex getPathIndex() {
+        PathIndex index = pathIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pathIndex;
+                if (index == null) {
+                    index = new PathIndex(swagger.getPaths().keySet());
+                    pathIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns a content fingerprint of the path with the given key and of everything it references, or a fixed
+     * marker if there is no such path.
+     */
+    public String fingerprint(String path) {
+        Fingerprinter f = fingerprinter;
+        if (f == null) {
+            synchronized (this) {
+                f = fingerprinter;
+                if (f == null) {
+                    f = new Fingerprinter(this);
+                    fingerprinter = f;
+                }
+            }
+        }
+        return f.fingerprint(path);
+    }
+
+    StructuralHasher getHasher() {
+        StructuralHasher h = hasher;
+        if (h == null) {
+            synchronized (this) {
+                h = hasher;
+                if (h == null) {
+                    h = new StructuralHasher(this);
+                    hasher = h;
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns the comparison plan of this spec as the expected side. It is compiled as comparisons use it and
+     * shared by every comparator created for this instance.
+     */
+    public ComparisonPlan getPlan() {
+        ComparisonPlan p = plan;
+        if (p == null) {
+            synchronized (this) {
+                p = plan;
+                if (p == null) {
+                    p = new ComparisonPlan(this);
+                    plan = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Returns the dereferenced parameter of the operation with the given location and name, or null if there is
+     * none. Parameters of each operation are indexed on first use, a {@code $ref} parameter whose target does not
+     * exist can not be matched by location and name and is left out, so it does not fail lookups of other ones.
+     */
+    public Parameter findParameter(Operation operation, String in, String name) {
+        Map<String, Map<String, Parameter>> index = parameterIndexes.get(operation);
+        if (index == null) {
+            index = new HashMap<>();
+            if (operation.getParameters() != null)
+                for (Parameter parameter : operation.getParameters()) {
+                    Parameter p;
+                    try {
+                        p = dereferenceParameter(parameter);
+                    } catch (ReferenceNotFoundException e) {
+                        continue;
+                    }
+                    index.computeIfAbsent(p.getIn(), key -> new HashMap<>()).putIfAbsent(p.getName(), p);
+                }
+            parameterIndexes.put(operation, index);
+        }
+
+        Map<String, Parameter> parameters = index.get(in);
+        return parameters == null ? null : parameters.get(name);
+    }
+
+    public Parameter dereferenceParameter(Parameter parameter) {
+        if (parameter instanceof RefParameter) {
+            return dereference(((RefParameter) parameter).get$ref());
+        }
+        return parameter;
+    }
+
+    public Model dereferenceModel(Model model) {
+        if (model instanceof RefModel) {
+            return dereference(((RefModel) model).get$ref());
+        }
+        return model;
+    }
+
+    public Property dereferenceProperty(Property property) {
+        if (property instanceof RefProperty) {
+            String $ref = ((RefProperty) property).get$ref();
+            ObjectProperty objectProperty = flattenedProperties.get($ref);
+            if (objectProperty != null) {
+                hits.incrementAndGet();
+                return objectProperty;
+            }
+
+            misses.incrementAndGet();
+            Model model = lookup($ref);
+            objectProperty = new ObjectProperty();
+            objectProperty.setProperties(model.getProperties());
+            objectProperty.setType("object");
+            ObjectProperty previous = flattenedProperties.putIfAbsent($ref, objectProperty);
+            return previous == null ? objectProperty : previous;
+        }
+        return property;
+    }
+
+    public Response dereferenceResponse(Response response) {
+        if (response instanceof RefResponse) {
+            return dereference(((RefResponse) response).get$ref());
+        }
+        return response;
+    }
+
+    public <T> T dereference(String $ref) {
+        if (references.containsKey($ref))
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return lookup($ref);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(String $ref) {
+        Object result = references.get($ref);
+        if (result == null) {
+            result = resolve($ref);
+            Object previous = references.putIfAbsent($ref, result);
+            if (previous != null)
+                result = previous;
+        }
+        return (T) result;
+    }
+
+    private Object resolve(String $ref) {
+        Object result = null;
+        if ($ref.startsWith(RefType.DEFINITION.getInternalPrefix()))
+            result = get(swagger.getDefinitions(), $ref, RefType.DEFINITION);
+        else if ($ref.startsWith(RefType.PARAMETER.getInternalPrefix()))
+            result = get(swagger.getParameters(), $ref, RefType.PARAMETER);
+        else if ($ref.startsWith(RefType.PATH.getInternalPrefix()))
+            result = get(swagger.getPaths(), $ref, RefType.PATH);
+        else if ($ref.startsWith(RefType.RESPONSE.getInternalPrefix()))
+            result = get(swagger.getResponses(), $ref, RefType.RESPONSE);
+
+        if (result == null)
+            throw new ReferenceNotFoundException("Not found definition of " + $ref);
+
+        return result;
+    }
+
+    private static Object get(Map<String, ?> map, String $ref, RefType type) {
+        return map == null ? null : map.get($ref.substring(type.getInternalPrefix().length()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.parser.SwaggerParser;
+import v2.io.swagger.parser.SwaggerResolver;
+import v2.io.swagger.parser.util.DeserializationUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of parsed specs keyed by a SHA-256 hash of their content, and for files by their path too, so an
+ * unchanged file is never parsed twice and its resolved references stay warm between comparisons.
+ */
+class SpecCache {
+
+    private final Map<String, ResolvedSwagger> specs;
+
+    SpecCache(int capacity) {
+        this.specs = new LinkedHashMap<String, ResolvedSwagger>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResolvedSwagger> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the spec of the file, keyed by its absolute path and content since relative refs resolve against the
+     * file's directory. The file is read once, and the spec is parsed from the content that was hashed.
+     */
+    ResolvedSwagger getFile(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file))
+            throw new IllegalArgumentException("File not found: " + path);
+
+        byte[] content = Files.readAllBytes(file);
+        String key = file.toAbsolutePath().normalize() + "@" + hash(content);
+        ResolvedSwagger swagger = get(key);
+        if (swagger == null)
+            swagger = put(key, parse(new String(content, StandardCharsets.UTF_8), path), path);
+        return swagger;
+    }
+
+    ResolvedSwagger getContent(String content) {
+        String hash = hash(content.getBytes(StandardCharsets.UTF_8));
+        ResolvedSwagger swagger = get(hash);
+        if (swagger == null)
+            swagger = put(hash, new SwaggerParser().parse(content), "uploaded spec");
+        return swagger;
+    }
+
+    synchronized int size() {
+        return specs.size();
+    }
+
+    private synchronized ResolvedSwagger get(String key) {
+        return specs.get(key);
+    }
+
+    /**
+     * Parses the content the way {@link SwaggerParser#read(String)} parses the file at the given location.
+     */
+    private static Swagger parse(String content, String location) {
+        Swagger swagger = new SwaggerParser().read(DeserializationUtils.deserializeIntoTree(content, location), false);
+        return swagger == null ? null : new SwaggerResolver(swagger, null, location).resolve();
+    }
+
+    private synchronized ResolvedSwagger put(String key, Swagger swagger, String source) {
+        if (swagger == null)
+            throw new IllegalArgumentException("Unable to parse " + source);
+        return specs.computeIfAbsent(key, k -> new ResolvedSwagger(swagger));
+    }
+
+    static String hash(byte[] content) {
+        return Utils.toHex(Utils.sha256().digest(content));
+    }
+}
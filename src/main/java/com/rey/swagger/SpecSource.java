@@ -0,0 +1,323 @@
+package com.rey.swagger;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A set of spec files keyed by their path relative to a directory or archive root, always separated by
+ * {@code /}. Only {@code .yaml}, {@code .yml} and {@code .json} files are listed.
+ */
+abstract class SpecSource implements Closeable {
+
+    /**
+     * Returns true if the given file is a directory or an archive that can be opened as a source.
+     */
+    static boolean isSource(File file) {
+        return file.isDirectory() || (file.isFile() && (isZip(file.getName()) || isTarGz(file.getName())));
+    }
+
+    static SpecSource open(File file) throws IOException {
+        if (file.isDirectory())
+            return new DirectorySource(file.toPath());
+        if (isZip(file.getName()))
+            return ArchiveSource.extractZip(file);
+        if (isTarGz(file.getName()))
+            return ArchiveSource.extractTarGz(file);
+        throw new IllegalArgumentException("Not a directory or archive: " + file);
+    }
+
+    /**
+     * Returns the relative paths of all specs in lexicographic order.
+     */
+    abstract List<String> list();
+
+    /**
+     * Returns the file holding the spec at the given relative path, specs it references by relative path are
+     * next to it.
+     */
+    abstract Path location(String path);
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    private static boolean isSpec(String name) {
+        String lowerCase = name.toLowerCase();
+        return lowerCase.endsWith(".yaml") || lowerCase.endsWith(".yml") || lowerCase.endsWith(".json");
+    }
+
+    private static boolean isZip(String name) {
+        return name.toLowerCase().endsWith(".zip");
+    }
+
+    private static boolean isTarGz(String name) {
+        String lowerCase = name.toLowerCase();
+        return lowerCase.endsWith(".tar.gz") || lowerCase.endsWith(".tgz");
+    }
+
+    /**
+     * Returns the relative path of an archive entry without a leading {@code ./} or {@code /}, or null if it
+     * points outside of the archive root.
+     */
+    static String normalize(String name) {
+        String path = name.replace('\\', '/');
+        while (path.startsWith("./") || path.startsWith("/"))
+            path = path.substring(path.startsWith("/") ? 1 : 2);
+        for (String segment : path.split("/"))
+            if (segment.equals(".."))
+                return null;
+        return path.isEmpty() ? null : path;
+    }
+
+    private static class DirectorySource extends SpecSource {
+
+        private final Path root;
+        private final List<String> paths;
+
+        DirectorySource(Path root) throws IOException {
+            this.root = root;
+            try (Stream<Path> files = Files.walk(root)) {
+                this.paths = files
+                        .filter(Files::isRegularFile)
+                        .map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                        .filter(SpecSource::isSpec)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        List<String> list() {
+            return paths;
+        }
+
+        @Override
+        Path location(String path) {
+            return root.resolve(path);
+        }
+    }
+
+    /**
+     * Specs of an archive, extracted into a temporary directory that is deleted on close. Archives are read in
+     * a single pass, as a gzipped tar can only be, and no content is kept in memory.
+     */
+    private static class ArchiveSource extends DirectorySource {
+
+        private static final int BLOCK = 512;
+
+        private final Path directory;
+
+        private ArchiveSource(Path directory) throws IOException {
+            super(directory);
+            this.directory = directory;
+        }
+
+        static ArchiveSource extractZip(File file) throws IOException {
+            Path directory = Files.createTempDirectory("specs");
+            try (ZipFile zip = new ZipFile(file)) {
+                for (ZipEntry entry : Collections.list(zip.entries()))
+                    if (!entry.isDirectory())
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            extract(directory, entry.getName(), in);
+                        }
+                return new ArchiveSource(directory);
+            } catch (IOException | RuntimeException e) {
+                delete(directory);
+                throw e;
+            }
+        }
+
+        /**
+         * Reads a ustar archive, with GNU long names ({@code L}) and pax extended headers ({@code x}) for paths
+         * longer than 100 characters.
+         */
+        static ArchiveSource extractTarGz(File file) throws IOException {
+            Path directory = Files.createTempDirectory("specs");
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()), 64 * 1024)))) {
+                byte[] header = new byte[BLOCK];
+                String longName = null;
+                while (true) {
+                    try {
+                        in.readFully(header);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    String name = field(header, 0, 100);
+                    if (name.isEmpty())
+                        break;
+                    String prefix = field(header, 345, 155);
+                    if (!prefix.isEmpty())
+                        name = prefix + "/" + name;
+                    long size = size(header);
+                    char type = (char) header[156];
+
+                    if (type == 'L' || type == 'x') {
+                        byte[] content = new byte[(int) size];
+                        in.readFully(content);
+                        String extended = type == 'L' ? field(content, 0, content.length) : paxPath(content);
+                        if (extended != null)
+                            longName = extended;
+                    } else if (type == 'g' || type == 'K') {
+                        skip(in, size);
+                    } else {
+                        if (longName != null) {
+                            name = longName;
+                            longName = null;
+                        }
+                        if (type == '0' || type == 0)
+                            extract(directory, name, new BoundedInputStream(in, size));
+                        else
+                            skip(in, size);
+                    }
+                    skip(in, (BLOCK - size % BLOCK) % BLOCK);
+                }
+                return new ArchiveSource(directory);
+            } catch (IOException | RuntimeException e) {
+                delete(directory);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delete(directory);
+        }
+
+        /**
+         * Writes a spec entry below the directory, other entries and entries outside of the root are skipped.
+         * The stream is read to its end either way.
+         */
+        private static void extract(Path directory, String name, InputStream in) throws IOException {
+            String path = normalize(name);
+            if (path == null || !isSpec(path)) {
+                drain(in);
+                return;
+            }
+            Path target = directory.resolve(path);
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = Files.newOutputStream(target)) {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) > 0)
+                    out.write(buffer, 0, count);
+            }
+        }
+
+        private static void delete(Path directory) throws IOException {
+            if (!Files.exists(directory))
+                return;
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+
+        private static String field(byte[] header, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && header[end] != 0)
+                end++;
+            return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the size field, octal or, for entries of 8 GB and more, base-256 with the high bit set.
+         */
+        private static long size(byte[] header) {
+            if ((header[124] & 0x80) != 0) {
+                long size = 0;
+                for (int i = 125; i < 136; i++)
+                    size = (size << 8) | (header[i] & 0xff);
+                return size;
+            }
+            return Long.parseLong("0" + field(header, 124, 12).trim(), 8);
+        }
+
+        /**
+         * Returns the {@code path} of pax records, each written as {@code "LENGTH key=value\n"}, or null if it is
+         * not set.
+         */
+        private static String paxPath(byte[] content) {
+            String path = null;
+            int offset = 0;
+            while (offset < content.length) {
+                int space = offset;
+                while (space < content.length && content[space] != ' ')
+                    space++;
+                if (space == content.length)
+                    break;
+                int length = Integer.parseInt(new String(content, offset, space - offset, StandardCharsets.UTF_8));
+                if (length <= 0 || offset + length > content.length)
+                    break;
+                String record = new String(content, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+                if (record.startsWith("path="))
+                    path = record.substring("path=".length());
+                offset += length;
+            }
+            return path;
+        }
+
+        private static void skip(DataInputStream in, long count) throws IOException {
+            while (count > 0) {
+                int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+                if (skipped <= 0)
+                    throw new EOFException("Truncated archive");
+                count -= skipped;
+            }
+        }
+
+        private static void drain(InputStream in) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) > 0) {
+                // discard
+            }
+        }
+    }
+
+    /**
+     * Reads at most the given number of bytes of a tar entry, failing if the archive ends before.
+     */
+    private static class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long size) {
+            this.in = in;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0)
+                return -1;
+            int count = in.read(b, off, (int) Math.min(len, remaining));
+            if (count < 0)
+                throw new EOFException("Truncated entry");
+            remaining -= count;
+            return count;
+        }
+    }
+}
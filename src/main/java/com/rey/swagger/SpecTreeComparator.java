@@ -0,0 +1,134 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.parser.SwaggerParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Compares every spec of an expected directory or archive with the spec at the same relative path in an actual
+ * one. Pairs are read and parsed on the given executor a few pairs ahead of the comparison, which runs on the
+ * calling thread, so reading and parsing of the next pairs overlaps with comparing the current one.
+ */
+public class SpecTreeComparator {
+
+    private final ExecutorService executor;
+    private final int prefetch;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public SpecTreeComparator(ExecutorService executor, int prefetch) {
+        this.executor = executor;
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    /**
+     * Writes one report entry per expected spec, keyed by its relative path and in path order. Both files must be
+     * directories, zip or tar.gz archives. A spec missing from the actual tree is reported as {@code "Not found"}.
+     * Relative {@code $ref}s such as {@code ./common.yaml#/Error} are resolved against the referencing spec within
+     * its own tree.
+     */
+    public void compare(File expected, File actual, OutputStream out) throws IOException {
+        try (SpecSource expectedSource = SpecSource.open(expected); SpecSource actualSource = SpecSource.open(actual)) {
+            compare(expectedSource, actualSource, out);
+        }
+    }
+
+    private void compare(SpecSource expected, SpecSource actual, OutputStream out) throws IOException {
+        Set<String> actualPaths = new HashSet<>(actual.list());
+        Iterator<String> paths = expected.list().iterator();
+        Deque<Future<Result>> pending = new ArrayDeque<>();
+
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            while (paths.hasNext() || !pending.isEmpty()) {
+                while (paths.hasNext() && pending.size() < prefetch) {
+                    String path = paths.next();
+                    pending.add(executor.submit(() -> parse(path, expected, actual, actualPaths.contains(path))));
+                }
+
+                Result result = await(pending.poll());
+                generator.writeFieldName(result.path);
+                if (result.error != null)
+                    generator.writeString(result.error);
+                else
+                    writeReport(generator, result);
+                generator.flush();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the report of one pair, or the error message if the comparison fails, so one broken pair does not
+     * stop the others.
+     */
+    private static void writeReport(JsonGenerator generator, Result result) throws IOException {
+        String report;
+        try {
+            report = new SwaggerComparator(result.expected, result.actual).compare();
+        } catch (Exception e) {
+            generator.writeString(String.valueOf(e.getMessage()));
+            return;
+        }
+        generator.writeRawValue(report);
+    }
+
+    private static Result parse(String path, SpecSource expected, SpecSource actual, boolean found) {
+        if (!found)
+            return Result.error(path, "Not found");
+
+        try {
+            Swagger expectedSwagger = new SwaggerParser().read(expected.location(path).toString());
+            Swagger actualSwagger = new SwaggerParser().read(actual.location(path).toString());
+            if (expectedSwagger == null || actualSwagger == null)
+                return Result.error(path, "Unable to parse: " + path);
+            return new Result(path, expectedSwagger, actualSwagger, null);
+        } catch (Exception e) {
+            return Result.error(path, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static Result await(Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for parsing", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static class Result {
+
+        private final String path;
+        private final Swagger expected;
+        private final Swagger actual;
+        private final String error;
+
+        Result(String path, Swagger expected, Swagger actual, String error) {
+            this.path = path;
+            this.expected = expected;
+            this.actual = actual;
+            this.error = error;
+        }
+
+        static Result error(String path, String error) {
+            return new Result(path, null, null, error);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.rey.swagger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Watches an expected and an actual spec file and prints a new report whenever one of them changes. Parsed
+ * specs are kept in memory, so only a file whose content changed is parsed again, and a burst of writes
+ * within the debounce interval triggers a single comparison. An unchanged expected spec keeps its
+ * {@link ResolvedSwagger#getPlan() comparison plan} across reloads.
+ */
+public class SpecWatcher {
+
+    private final Path expectedFile;
+    private final Path actualFile;
+    private final long debounceMillis;
+    private final BiFunction<ResolvedSwagger, ResolvedSwagger, SwaggerComparator> comparatorFactory;
+    private final PrintStream out;
+
+    private final SpecCache specs = new SpecCache(4);
+
+    private ResolvedSwagger expected;
+    private ResolvedSwagger actual;
+
+    public SpecWatcher(Path expectedFile, Path actualFile, long debounceMillis,
+                       BiFunction<ResolvedSwagger, ResolvedSwagger, SwaggerComparator> comparatorFactory, PrintStream out) {
+        this.expectedFile = expectedFile.toAbsolutePath().normalize();
+        this.actualFile = actualFile.toAbsolutePath().normalize();
+        this.debounceMillis = debounceMillis;
+        this.comparatorFactory = comparatorFactory;
+        this.out = out;
+    }
+
+    /**
+     * Compares both files, then compares again after every change until the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (Path directory : new LinkedHashSet<>(Arrays.asList(expectedFile.getParent(), actualFile.getParent())))
+                directories.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+
+            // Registered first, so changes made while the first comparison runs are not missed
+            expected = specs.getFile(expectedFile.toString());
+            actual = specs.getFile(actualFile.toString());
+            compare();
+
+            Set<Path> changed = new LinkedHashSet<>();
+            long deadline = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                long wait = deadline - System.currentTimeMillis();
+                WatchKey key = changed.isEmpty() ? watchService.take() : wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (key != null) {
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            continue;
+                        Path file = directory.resolve((Path) event.context());
+                        if (file.equals(expectedFile) || file.equals(actualFile)) {
+                            changed.add(file);
+                            deadline = System.currentTimeMillis() + debounceMillis;
+                        }
+                    }
+                    key.reset();
+                } else if (!changed.isEmpty()) {
+                    if (reload(changed))
+                        compare();
+                    changed.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the changed files again unless their content is unchanged. Returns false if nothing changed or a
+     * file can not be parsed, in which case the previous version is kept.
+     */
+    private boolean reload(Set<Path> changed) {
+        ResolvedSwagger newExpected = expected;
+        ResolvedSwagger newActual = actual;
+        try {
+            if (changed.contains(expectedFile))
+                newExpected = specs.getFile(expectedFile.toString());
+            if (changed.contains(actualFile))
+                newActual = specs.getFile(actualFile.toString());
+        } catch (IllegalArgumentException | IOException e) {
+            out.println(e.getMessage());
+            return false;
+        }
+
+        if (newExpected == expected && newActual == actual)
+            return false;
+        expected = newExpected;
+        actual = newActual;
+        return true;
+    }
+
+    /**
+     * Prints the report, or the error if the specs can not be compared, e.g. while a {@code $ref} points to a
+     * definition that is not written yet. Watching goes on either way.
+     */
+    private void compare() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.println(comparatorFactory.apply(expected, actual).compare());
+        } catch (RuntimeException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        out.println(String.format("Compared in %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the report straight to a {@link JsonGenerator}. Scopes are kept pending and only written once the
+ * first entry inside them arrives, so empty scopes never reach the output.
+ */
+class StreamingDiffWriter implements DiffWriter, Closeable {
+
+    private final JsonGenerator generator;
+
+    private final List<String> scopes = new ArrayList<>();
+    private int opened = 0;
+
+    StreamingDiffWriter(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void begin(String name) {
+        scopes.add(name);
+    }
+
+    @Override
+    public void end() {
+        try {
+            if (opened == scopes.size()) {
+                generator.writeEndObject();
+                opened--;
+            }
+            scopes.remove(scopes.size() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        try {
+            open();
+            generator.writeStringField(name, kind.render(expected, actual));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+        try {
+            open();
+            generator.writeFieldName(name);
+            generator.writeTree(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    private void open() throws IOException {
+        while (opened < scopes.size())
+            generator.writeObjectFieldStart(scopes.get(opened++));
+    }
+}
@@ -0,0 +1,240 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.Model;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.parameters.AbstractSerializableParameter;
+import v2.io.swagger.models.parameters.BodyParameter;
+import v2.io.swagger.models.parameters.Parameter;
+import v2.io.swagger.models.properties.ArrayProperty;
+import v2.io.swagger.models.properties.BooleanProperty;
+import v2.io.swagger.models.properties.DateProperty;
+import v2.io.swagger.models.properties.DateTimeProperty;
+import v2.io.swagger.models.properties.DoubleProperty;
+import v2.io.swagger.models.properties.FloatProperty;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.LongProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.PasswordProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.StringProperty;
+import v2.io.swagger.models.properties.UUIDProperty;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Computes 64-bit structural hashes of dereferenced models, properties, parameters and responses, covering
+ * every attribute {@link SwaggerComparator} looks at. Two nodes with the same hash compare without
+ * differences. Hashes are memoized per node, so a shared definition is hashed once per document.
+ * <p>
+ * Nodes that reach a recursive definition or a missing one, or that are nested deeper than {@link #MAX_DEPTH},
+ * get {@link #UNHASHABLE} and are always compared.
+ */
+class StructuralHasher {
+
+    static final long UNHASHABLE = 0;
+
+    static final int MAX_DEPTH = 256;
+
+    private static final long NULL = 0x5bd1e9955bd1e995L;
+
+    private final ResolvedSwagger swagger;
+
+    private final Map<Object, Long> hashes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    StructuralHasher(ResolvedSwagger swagger) {
+        this.swagger = swagger;
+    }
+
+    long hashModel(Model model) {
+        return hashRoot(() -> swagger.dereferenceModel(model));
+    }
+
+    long hashProperty(Property property) {
+        return hashRoot(() -> swagger.dereferenceProperty(property));
+    }
+
+    long hashParameter(Parameter parameter) {
+        return hashRoot(() -> swagger.dereferenceParameter(parameter));
+    }
+
+    long hashResponse(Response response) {
+        return hashRoot(() -> swagger.dereferenceResponse(response));
+    }
+
+    private long hashRoot(Supplier<Object> node) {
+        try {
+            return hash(node.get(), newInProgress());
+        } catch (ReferenceNotFoundException e) {
+            return UNHASHABLE;
+        }
+    }
+
+    private long hash(Object node, Set<Object> inProgress) {
+        if (node == null)
+            return NULL;
+
+        Long cached = hashes.get(node);
+        if (cached != null)
+            return cached;
+
+        if (inProgress.size() >= MAX_DEPTH || !inProgress.add(node))
+            return UNHASHABLE;
+
+        long hash;
+        try {
+            if (node instanceof Property)
+                hash = hashProperty((Property) node, inProgress);
+            else if (node instanceof Model)
+                hash = hashProperties(((Model) node).getProperties(), inProgress);
+            else if (node instanceof Parameter)
+                hash = hashParameter((Parameter) node, inProgress);
+            else if (node instanceof Response)
+                hash = hash(swagger.dereferenceProperty(((Response) node).getSchema()), inProgress);
+            else
+                hash = UNHASHABLE;
+        } catch (ReferenceNotFoundException e) {
+            hash = UNHASHABLE;
+        }
+
+        if (hash != UNHASHABLE)
+            hash = combine(hash, string(node.getClass().getName()));
+        inProgress.remove(node);
+        hashes.put(node, hash);
+        return hash;
+    }
+
+    private long hashProperty(Property property, Set<Object> inProgress) {
+        long hash = combine(string(property.getType()), string(property.getFormat()));
+        hash = combine(hash, string(patternOf(property)));
+        hash = combine(hash, list(enumOf(property)));
+
+        if (property instanceof ArrayProperty) {
+            long items = hash(swagger.dereferenceProperty(((ArrayProperty) property).getItems()), inProgress);
+            if (items == UNHASHABLE)
+                return UNHASHABLE;
+            hash = combine(hash, items);
+        }
+
+        if (property instanceof ObjectProperty) {
+            long properties = hashProperties(((ObjectProperty) property).getProperties(), inProgress);
+            if (properties == UNHASHABLE)
+                return UNHASHABLE;
+            hash = combine(hash, properties);
+        }
+        return hash;
+    }
+
+    private long hashParameter(Parameter parameter, Set<Object> inProgress) {
+        long hash = combine(string(parameter.getIn()), string(parameter.getName()));
+        if (parameter instanceof BodyParameter) {
+            long schema = hash(swagger.dereferenceModel(((BodyParameter) parameter).getSchema()), inProgress);
+            if (schema == UNHASHABLE)
+                return UNHASHABLE;
+            hash = combine(hash, schema);
+        }
+
+        if (parameter instanceof AbstractSerializableParameter) {
+            AbstractSerializableParameter<?> serializable = (AbstractSerializableParameter<?>) parameter;
+            hash = combine(hash, string(serializable.getType()));
+            hash = combine(hash, string(serializable.getFormat()));
+            hash = combine(hash, string(serializable.getPattern()));
+            hash = combine(hash, list(serializable.getEnum()));
+            long items = hash(swagger.dereferenceProperty(serializable.getItems()), inProgress);
+            if (items == UNHASHABLE)
+                return UNHASHABLE;
+            hash = combine(hash, items);
+        }
+        return hash;
+    }
+
+    private long hashProperties(Map<String, Property> properties, Set<Object> inProgress) {
+        if (properties == null)
+            return NULL;
+
+        long hash = properties.size();
+        for (Map.Entry<String, Property> entry : properties.entrySet()) {
+            long value = hash(swagger.dereferenceProperty(entry.getValue()), inProgress);
+            if (value == UNHASHABLE)
+                return UNHASHABLE;
+            hash += mix(combine(string(entry.getKey()), value));
+        }
+        return hash;
+    }
+
+    private static String patternOf(Property property) {
+        if (property instanceof StringProperty)
+            return ((StringProperty) property).getPattern();
+        if (property instanceof PasswordProperty)
+            return ((PasswordProperty) property).getPattern();
+        if (property instanceof UUIDProperty)
+            return ((UUIDProperty) property).getPattern();
+        return null;
+    }
+
+    private static List<?> enumOf(Property property) {
+        if (property instanceof StringProperty)
+            return ((StringProperty) property).getEnum();
+        if (property instanceof BooleanProperty)
+            return ((BooleanProperty) property).getEnum();
+        if (property instanceof DateProperty)
+            return ((DateProperty) property).getEnum();
+        if (property instanceof DateTimeProperty)
+            return ((DateTimeProperty) property).getEnum();
+        if (property instanceof DoubleProperty)
+            return ((DoubleProperty) property).getEnum();
+        if (property instanceof FloatProperty)
+            return ((FloatProperty) property).getEnum();
+        if (property instanceof IntegerProperty)
+            return ((IntegerProperty) property).getEnum();
+        if (property instanceof LongProperty)
+            return ((LongProperty) property).getEnum();
+        if (property instanceof PasswordProperty)
+            return ((PasswordProperty) property).getEnum();
+        if (property instanceof UUIDProperty)
+            return ((UUIDProperty) property).getEnum();
+        return null;
+    }
+
+    private static Set<Object> newInProgress() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static long list(List<?> values) {
+        if (values == null)
+            return NULL;
+        long hash = values.size();
+        for (Object value : values)
+            hash = combine(hash, string(String.valueOf(value)));
+        return hash;
+    }
+
+    private static long string(String value) {
+        if (value == null)
+            return NULL;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long combine(long hash, long value) {
+        long result = mix(hash * 0x9e3779b97f4a7c15L + value);
+        return result == UNHASHABLE ? 1 : result;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
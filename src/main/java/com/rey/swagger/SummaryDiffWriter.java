@@ -0,0 +1,144 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Counts differences by kind, by path prefix and by tag instead of building a report, and keeps the first few
+ * as a sample. Memory depends on the number of prefixes and tags of the spec, not on the number of differences.
+ */
+class SummaryDiffWriter implements DiffWriter {
+
+    /**
+     * Kinds the differences are counted by, a missing {@code items} is counted apart from other missing fields.
+     */
+    static final List<String> KINDS = Collections.unmodifiableList(Arrays.asList("notFound", "type", "format", "pattern", "enum", "items"));
+
+    private final int prefixSegments;
+    private final int sampleSize;
+    private final BiFunction<String, String, List<String>> tagsOf;
+
+    private final LocationStack scopes = new LocationStack();
+    private final long[] kinds = new long[KINDS.size()];
+    private final Map<String, long[]> prefixes = new HashMap<>();
+    private final Map<String, long[]> tags = new HashMap<>();
+    private final List<Diff> sample = new ArrayList<>();
+    private long total;
+
+    private String path;
+    private List<String> operationTags = Collections.emptyList();
+
+    /**
+     * @param prefixSegments number of segments of the expected path to group by, e.g. 1 groups {@code /users/{id}}
+     *                       under {@code /users}
+     * @param tagsOf         returns the tags of the expected operation with the given path and method
+     */
+    SummaryDiffWriter(int prefixSegments, int sampleSize, BiFunction<String, String, List<String>> tagsOf) {
+        this.prefixSegments = prefixSegments;
+        this.sampleSize = sampleSize;
+        this.tagsOf = tagsOf;
+    }
+
+    @Override
+    public void begin(String name) {
+        if (scopes.size() == 0)
+            path = name;
+        else if (scopes.size() == 1)
+            operationTags = tagsOf.apply(path, name);
+        scopes.push(name);
+    }
+
+    @Override
+    public void end() {
+        scopes.pop();
+        if (scopes.size() == 1)
+            operationTags = Collections.emptyList();
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        if (kind == DiffKind.NOTE)
+            return;
+
+        int index = kind == DiffKind.NOT_FOUND ? ("items".equals(name) ? KINDS.indexOf("items") : 0) : KINDS.indexOf(kind.getField());
+        total++;
+        kinds[index]++;
+        count(prefixes, prefix(scopes.size() == 0 ? name : path), index);
+        List<String> diffTags = scopes.size() == 1 ? tagsOf.apply(path, name) : operationTags;
+        for (String tag : diffTags)
+            count(tags, tag, index);
+        if (sample.size() < sampleSize)
+            sample.add(new Diff(scopes.child(name), kind, expected, actual));
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+    }
+
+    /**
+     * Returns the summary as {@code {"total":n,"kinds":{...},"paths":{...},"tags":{...},"sample":[...]}}, paths
+     * and tags ordered by their number of differences.
+     */
+    ObjectNode toJson(ObjectMapper mapper) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("total", total);
+        root.set("kinds", counts(mapper, kinds));
+        root.set("paths", groups(mapper, prefixes));
+        root.set("tags", groups(mapper, tags));
+        ArrayNode diffs = root.putArray("sample");
+        for (Diff diff : sample)
+            diffs.addObject()
+                    .put("location", diff.getLocation().toString())
+                    .put("message", diff.getMessage());
+        return root;
+    }
+
+    private String prefix(String path) {
+        int end = 0;
+        for (int segment = 0; segment < prefixSegments; segment++) {
+            int next = path.indexOf('/', end + 1);
+            if (next < 0)
+                return path;
+            end = next;
+        }
+        return end == 0 ? "/" : path.substring(0, end);
+    }
+
+    private static void count(Map<String, long[]> groups, String group, int index) {
+        long[] counts = groups.computeIfAbsent(group, key -> new long[KINDS.size() + 1]);
+        counts[index]++;
+        counts[KINDS.size()]++;
+    }
+
+    private static ObjectNode groups(ObjectMapper mapper, Map<String, long[]> groups) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(groups.entrySet());
+        entries.sort((a, b) -> a.getValue()[KINDS.size()] != b.getValue()[KINDS.size()]
+                ? Long.compare(b.getValue()[KINDS.size()], a.getValue()[KINDS.size()])
+                : a.getKey().compareTo(b.getKey()));
+        ObjectNode node = mapper.createObjectNode();
+        for (Map.Entry<String, long[]> entry : entries) {
+            ObjectNode group = node.putObject(entry.getKey());
+            group.put("total", entry.getValue()[KINDS.size()]);
+            group.setAll(counts(mapper, entry.getValue()));
+        }
+        return node;
+    }
+
+    private static ObjectNode counts(ObjectMapper mapper, long[] counts) {
+        ObjectNode node = mapper.createObjectNode();
+        for (int i = 0; i < KINDS.size(); i++)
+            if (counts[i] > 0)
+                node.put(KINDS.get(i), counts[i]);
+        return node;
+    }
+}
@@ -1,47 +1,68 @@
 package com.rey.swagger;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Objects;
+import com.rey.swagger.ComparisonPlan.EnumPlan;
+import com.rey.swagger.ComparisonPlan.ModelPlan;
+import com.rey.swagger.ComparisonPlan.OperationPlan;
+import com.rey.swagger.ComparisonPlan.ParameterPlan;
+import com.rey.swagger.ComparisonPlan.PropertyPlan;
+import com.rey.swagger.ComparisonPlan.ResponsePlan;
 import v2.io.swagger.models.HttpMethod;
 import v2.io.swagger.models.Model;
 import v2.io.swagger.models.Operation;
 import v2.io.swagger.models.Path;
 import v2.io.swagger.models.RefModel;
-import v2.io.swagger.models.RefResponse;
 import v2.io.swagger.models.Response;
 import v2.io.swagger.models.Swagger;
 import v2.io.swagger.models.parameters.AbstractSerializableParameter;
 import v2.io.swagger.models.parameters.BodyParameter;
 import v2.io.swagger.models.parameters.Parameter;
-import v2.io.swagger.models.parameters.RefParameter;
 import v2.io.swagger.models.properties.ArrayProperty;
-import v2.io.swagger.models.properties.BooleanProperty;
-import v2.io.swagger.models.properties.DateProperty;
-import v2.io.swagger.models.properties.DateTimeProperty;
-import v2.io.swagger.models.properties.DoubleProperty;
-import v2.io.swagger.models.properties.FloatProperty;
-import v2.io.swagger.models.properties.IntegerProperty;
-import v2.io.swagger.models.properties.LongProperty;
 import v2.io.swagger.models.properties.ObjectProperty;
-import v2.io.swagger.models.properties.PasswordProperty;
 import v2.io.swagger.models.properties.Property;
 import v2.io.swagger.models.properties.RefProperty;
-import v2.io.swagger.models.properties.StringProperty;
-import v2.io.swagger.models.properties.UUIDProperty;
-import v2.io.swagger.models.refs.RefType;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class SwaggerComparator {
 
     private boolean debug = false;
 
-    private final Swagger expectedSwagger;
-    private final Swagger actualSwagger;
+    private ExecutorService executor;
+    private boolean reportExtraEnumValues = false;
+    private FingerprintCache fingerprintCache;
+    private ComparisonScope scope;
+    private boolean structuralHashing = true;
+    private ComparisonMetrics metrics;
+    private boolean includeMetrics = false;
+
+    private final AtomicLong skippedSubtrees = new AtomicLong();
+
+    private final ThreadLocal<List<String>> logBuffer = new ThreadLocal<>();
+
+    private final ComparisonPlan plan;
+    private final ResolvedSwagger expectedSwagger;
+    private final ResolvedSwagger actualSwagger;
 
     private final ObjectMapper mapper = new ObjectMapper();
 
@@ -50,445 +71,643 @@ public class SwaggerComparator {
     }
 
     public SwaggerComparator(Swagger expectedSwagger, Swagger actualSwagger, boolean debug) {
-        this.expectedSwagger = expectedSwagger;
-        this.actualSwagger = actualSwagger;
-        this.debug = debug;
+        this(new ResolvedSwagger(expectedSwagger), new ResolvedSwagger(actualSwagger), debug);
     }
 
-    public String compare() throws JsonProcessingException {
-        ObjectNode rootNode = mapper.createObjectNode();
-
-        if(expectedSwagger.getPaths() != null) {
-            expectedSwagger.getPaths().forEach((key, path) -> {
-                Path actualPath = findPath(key, actualSwagger);
-                log("Compare path: %s", key);
-                if (actualPath == null)
-                    rootNode.put(key, "Not found");
-                else {
-                    ObjectNode pathNode = mapper.createObjectNode();
-                    comparePath(pathNode, path, actualPath);
-                    if (pathNode.size() > 0)
-                        rootNode.set(key, pathNode);
-                }
-            });
-        }
-
-        return rootNode.toString();
+    public SwaggerComparator(ResolvedSwagger expectedSwagger, ResolvedSwagger actualSwagger) {
+        this(expectedSwagger, actualSwagger, false);
     }
 
-    private void comparePath(ObjectNode node, Path expected, Path actual) {
-        if(expected.getOperationMap() != null) {
-            Map<HttpMethod, Operation> actualOperations = actual.getOperationMap();
-            expected.getOperationMap().forEach((method, operation) -> {
-                Operation actualOperation = actualOperations == null ? null : actualOperations.get(method);
-                log("Compare operation: %s", method.name());
-                if (actualOperation == null)
-                    node.put(method.name(), "Not found");
-                else {
-                    ObjectNode operationNode = mapper.createObjectNode();
-                    compareOperation(operationNode, operation, actualOperation);
-                    if (operationNode.size() > 0)
-                        node.set(method.name(), operationNode);
-                }
-            });
-        }
+    public SwaggerComparator(ResolvedSwagger expectedSwagger, ResolvedSwagger actualSwagger, boolean debug) {
+        this(expectedSwagger.getPlan(), actualSwagger, debug);
     }
 
-    private void compareOperation(ObjectNode node, Operation expected, Operation actual) {
-        ObjectNode parametersNode = mapper.createObjectNode();
-        if(expected.getParameters() != null) {
-            expected.getParameters().stream()
-                    .map(parameter -> dereferenceParameter(parameter, expectedSwagger))
-                    .forEach(parameter -> {
-                        log("Compare parameter in %s: %s", parameter.getIn(), parameter.getName());
-
-                        ObjectNode inNode = (ObjectNode) parametersNode.get(parameter.getIn());
-                        if (inNode == null)
-                            inNode = mapper.createObjectNode();
-
-                        Parameter actualParameter = dereferenceParameter(findParameter(parameter.getIn(), parameter.getName(), actual), actualSwagger);
-
-                        if (actualParameter == null)
-                            inNode.put(parameter.getName(), "Not found");
-                        else {
-                            ObjectNode parameterNode = mapper.createObjectNode();
-                            compareParameter(parameterNode, parameter, actualParameter);
-                            if (parameterNode.size() > 0)
-                                inNode.set(parameter.getName(), parameterNode);
-                        }
-
-                        if (inNode.size() > 0)
-                            parametersNode.set(parameter.getIn(), inNode);
-                    });
-        }
+    /**
+     * Compares the actual spec against an expected spec compiled with {@link ComparisonPlan#compile}. The plan can
+     * be shared by any number of comparators, also concurrently.
+     */
+    public SwaggerComparator(ComparisonPlan plan, ResolvedSwagger actualSwagger) {
+        this(plan, actualSwagger, false);
+    }
 
-        if (parametersNode.size() > 0)
-            node.set("parameters", parametersNode);
+    public SwaggerComparator(ComparisonPlan plan, ResolvedSwagger actualSwagger, boolean debug) {
+        this.plan = plan;
+        this.expectedSwagger = plan.getExpected();
+        this.actualSwagger = actualSwagger;
+        this.debug = debug;
+    }
 
-        ObjectNode responsesNode = mapper.createObjectNode();
-        if(expected.getResponses() != null) {
-            Map<String, Response> actualResponses = actual.getResponses();
-            expected.getResponses().forEach((status, response) -> {
-                log("Compare response with status: %s", status);
-                Response actualResponse = actualResponses == null ? null : actualResponses.get(status);
-                if (actualResponse == null)
-                    responsesNode.put(status, "Not found");
-                else {
-                    ObjectNode responseNode = mapper.createObjectNode();
-                    compareResponse(responseNode, response, actualResponse);
-                    if (responseNode.size() > 0)
-                        responsesNode.set(status, responseNode);
-                }
-            });
-        }
+    /**
+     * Compares paths on the given executor instead of the calling thread. The report is merged back in the
+     * order of the expected paths, so the output is the same as a sequential run.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
 
-        if (responsesNode.size() > 0)
-            node.set("responses", responsesNode);
+    /**
+     * Also reports enum values of the actual spec that are not in the expected spec.
+     */
+    public void setReportExtraEnumValues(boolean reportExtraEnumValues) {
+        this.reportExtraEnumValues = reportExtraEnumValues;
     }
 
-    private void compareParameter(ObjectNode node, Parameter expected, Parameter actual) {
-        if (expected instanceof BodyParameter) {
-            compareModel(node, ((BodyParameter) expected).getSchema(), ((BodyParameter) actual).getSchema());
-        }
-        if (expected instanceof AbstractSerializableParameter) {
-            compareAbstractSerializableParameter(node, ((AbstractSerializableParameter) expected), ((AbstractSerializableParameter) actual));
-        }
+    /**
+     * Only compares the paths and operations of the expected spec that are in the given scope. References are
+     * resolved on demand, so definitions only reachable from out of scope operations are never resolved.
+     */
+    public void setScope(ComparisonScope scope) {
+        this.scope = scope;
     }
 
-    private boolean compareAbstractSerializableParameter(ObjectNode node, AbstractSerializableParameter expected, AbstractSerializableParameter actual) {
-        if (!Objects.equal(expected.getType(), actual.getType())) {
-            node.put("type", String.format("Expected '%s' but actual is '%s'", expected.getType(), actual.getType()));
-            return false;
-        }
+    /**
+     * Skips models, properties, parameters and responses whose structural hash is the same on both sides.
+     * Enabled by default.
+     */
+    public void setStructuralHashing(boolean structuralHashing) {
+        this.structuralHashing = structuralHashing;
+    }
 
-        if (!Objects.equal(expected.getFormat(), actual.getFormat())) {
-            node.put("format", String.format("Expected '%s' but actual is '%s'", expected.getFormat(), actual.getFormat()));
-            return false;
-        }
+    /**
+     * Records counters and per-path timings into the given metrics and appends them to the report of
+     * {@link #compare()} as a {@code $metrics} entry.
+     */
+    public void setMetrics(ComparisonMetrics metrics) {
+        setMetrics(metrics, true);
+    }
 
-        if (!Objects.equal(expected.getPattern(), actual.getPattern())) {
-            node.put("pattern", String.format("Expected '%s' but actual is '%s'", expected.getPattern(), actual.getPattern()));
-            return false;
-        }
+    public void setMetrics(ComparisonMetrics metrics, boolean includeInReport) {
+        this.metrics = metrics;
+        this.includeMetrics = includeInReport;
+    }
 
-        String value = Utils.findNotContains((List<String>) expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
-        }
+    /**
+     * Reuses report fragments from the given cache for paths that did not change, and stores the new ones in
+     * it. The caller loads and saves the cache.
+     */
+    public void setFingerprintCache(FingerprintCache fingerprintCache) {
+        this.fingerprintCache = fingerprintCache;
+    }
 
-        if (expected.getItems() != null) {
-            if (actual.getItems() == null) {
-                node.put("items", "Not found");
-                return false;
-            }
+    public String compare() throws JsonProcessingException {
+        TreeDiffWriter writer = new TreeDiffWriter(mapper);
+        compare(writer);
+        return writer.getRoot().toString();
+    }
 
-            ObjectNode itemsNode = mapper.createObjectNode();
-            if (!compareProperty(itemsNode, expected.getItems(), actual.getItems())) {
-                node.set("items", itemsNode);
-                return false;
-            }
+    /**
+     * Writes the report to the given stream while comparing, without holding the whole report in memory.
+     */
+    public void compare(OutputStream out) throws IOException {
+        try (StreamingDiffWriter writer = new StreamingDiffWriter(mapper.getFactory().createGenerator(out))) {
+            compare(writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        return true;
+    /**
+     * Passes each difference to the given consumer as it is found, without building a report. Messages are only
+     * rendered when {@link Diff#getMessage()} is called.
+     */
+    public void compare(Consumer<Diff> consumer) {
+        compare(new DiffCollector(consumer));
     }
 
-    private void compareModel(ObjectNode node, Model expected, Model actual) {
-        expected = dereferenceModel(expected, expectedSwagger);
-        actual = dereferenceModel(actual, actualSwagger);
-        final Map<String, Property> actualProperties = actual.getProperties();
-        if(expected.getProperties() != null)
-            expected.getProperties().forEach((key, property) -> {
-                log("Compare property: %s", key);
-                Property actualProperty = actualProperties == null ? null : actualProperties.get(key);
-                if (actualProperty == null)
-                    node.put(key, "Not found");
-                else {
-                    ObjectNode propertyNode = mapper.createObjectNode();
-                    if (!compareProperty(propertyNode, property, actualProperty))
-                        node.set(key, propertyNode);
-                }
-            });
+    /**
+     * Compares without building a report and returns the number of differences by kind, by the first segment of
+     * the expected path and by tag, along with the first 20 differences.
+     */
+    public String summarize() {
+        return summarize(1, 20);
     }
 
-    private void compareResponse(ObjectNode node, Response expected, Response actual) {
-        expected = dereferenceResponse(expected, expectedSwagger);
-        actual = dereferenceResponse(actual, actualSwagger);
-        if(expected.getSchema() != null) {
-            if(actual.getSchema() == null) {
-                node.put("schema", "Not found");
-            }
-            else
-                compareProperty(node, expected.getSchema(), actual.getSchema());
-        }
+    /**
+     * Like {@link #summarize()}, grouping paths by their first {@code prefixSegments} segments and keeping the
+     * first {@code sampleSize} differences. Memory stays flat however many differences there are, so the executor
+     * and fingerprint cache, which buffer report fragments, are not used.
+     */
+    public String summarize(int prefixSegments, int sampleSize) {
+        SummaryDiffWriter writer = new SummaryDiffWriter(prefixSegments, sampleSize, this::tagsOf);
+        if (expectedSwagger.getSwagger().getPaths() != null) {
+            Map<String, Path> paths = expectedSwagger.getSwagger().getPaths();
+            if (scope != null)
+                paths = scope.filter(paths);
+            compareSequential(writer, paths);
+        }
+        ObjectNode summary = writer.toJson(mapper);
+        if (metrics != null && includeMetrics)
+            summary.set("$metrics", metrics.toJson(mapper));
+        return summary.toString();
     }
 
-    private boolean compareProperty(ObjectNode node, Property expected, Property actual) {
-        expected = dereferenceProperty(expected, expectedSwagger);
-        actual = dereferenceProperty(actual, actualSwagger);
+    private List<String> tagsOf(String key, String method) {
+        Path path = expectedSwagger.getSwagger().getPath(key);
+        Map<HttpMethod, Operation> operations = path == null ? null : path.getOperationMap();
+        if (operations != null)
+            for (Map.Entry<HttpMethod, Operation> entry : operations.entrySet())
+                if (entry.getKey().name().equals(method) && entry.getValue().getTags() != null)
+                    return entry.getValue().getTags();
+        return Collections.emptyList();
+    }
 
-        if (!Objects.equal(expected.getType(), actual.getType()) || !expected.getClass().equals(actual.getClass())) {
-            node.put("type", String.format("Expected '%s' but actual is '%s'", expected.getType(), actual.getType()));
-            return false;
-        }
+    public boolean isCompatible() {
+        return findFirstDifference() == null;
+    }
 
-        if (!Objects.equal(expected.getFormat(), actual.getFormat())) {
-            node.put("format", String.format("Expected '%s' but actual is '%s'", expected.getFormat(), actual.getFormat()));
-            return false;
+    /**
+     * Compares until the first difference and returns its location, e.g. {@code /users > GET > responses > 200
+     * > name > type}, or null if the specs are compatible. No report is built, and the executor and fingerprint
+     * cache are not used.
+     */
+    public String findFirstDifference() {
+        if (expectedSwagger.getSwagger().getPaths() == null)
+            return null;
+
+        Map<String, Path> paths = expectedSwagger.getSwagger().getPaths();
+        if (scope != null)
+            paths = scope.filter(paths);
+
+        try {
+            compareSequential(new FailFastDiffWriter(), paths);
+            return null;
+        } catch (FailFastDiffWriter.Incompatible e) {
+            return e.getDiff().getLocation().toString();
         }
+    }
 
-        if (expected instanceof StringProperty)
-            return compareStringProperty(node, (StringProperty) expected, (StringProperty) actual);
-
-        if (expected instanceof BooleanProperty)
-            return compareBooleanProperty(node, (BooleanProperty) expected, (BooleanProperty) actual);
-
-        if (expected instanceof DateProperty)
-            return compareDateProperty(node, (DateProperty) expected, (DateProperty) actual);
-
-        if (expected instanceof DateTimeProperty)
-            return compareDateTimeProperty(node, (DateTimeProperty) expected, (DateTimeProperty) actual);
-
-        if (expected instanceof DoubleProperty)
-            return compareDoubleProperty(node, (DoubleProperty) expected, (DoubleProperty) actual);
+    private void compare(DiffWriter writer) {
+        if(expectedSwagger.getSwagger().getPaths() != null) {
+            Map<String, Path> paths = expectedSwagger.getSwagger().getPaths();
+            if (scope != null)
+                paths = scope.filter(paths);
 
-        if (expected instanceof FloatProperty)
-            return compareFloatProperty(node, (FloatProperty) expected, (FloatProperty) actual);
+            if (fingerprintCache != null)
+                compareIncremental(writer, paths);
+            else
+                comparePaths(writer, paths);
+        }
 
-        if (expected instanceof IntegerProperty)
-            return compareIntegerProperty(node, (IntegerProperty) expected, (IntegerProperty) actual);
+        log("Expected references: %d hits, %d misses", expectedSwagger.getHitCount(), expectedSwagger.getMissCount());
+        log("Actual references: %d hits, %d misses", actualSwagger.getHitCount(), actualSwagger.getMissCount());
+        log("Identical subtrees skipped: %d", skippedSubtrees.get());
 
-        if (expected instanceof LongProperty)
-            return compareLongProperty(node, (LongProperty) expected, (LongProperty) actual);
+        if (metrics != null && includeMetrics)
+            writer.putNode("$metrics", metrics.toJson(mapper));
+    }
 
-        if (expected instanceof PasswordProperty)
-            return comparePasswordProperty(node, (PasswordProperty) expected, (PasswordProperty) actual);
+    private void comparePaths(DiffWriter writer, Map<String, Path> paths) {
+        if (executor == null)
+            compareSequential(writer, paths);
+        else
+            compareParallel(writer, paths);
+    }
 
-        if (expected instanceof UUIDProperty)
-            return compareUUIDProperty(node, (UUIDProperty) expected, (UUIDProperty) actual);
+    /**
+     * Only compares paths whose fingerprint changed since the run that filled the cache, the report fragments
+     * of all other paths are taken from the cache.
+     */
+    private void compareIncremental(DiffWriter writer, Map<String, Path> paths) {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        Map<String, Path> changedPaths = new LinkedHashMap<>();
+        paths.forEach((key, path) -> {
+            String template = actualSwagger.findPath(key);
+            String fingerprint = String.join("|", expectedSwagger.fingerprint(key), String.valueOf(template),
+                    template == null ? "" : actualSwagger.fingerprint(template), String.valueOf(reportExtraEnumValues), String.valueOf(scope));
+            fingerprints.put(key, fingerprint);
+            if (!fingerprintCache.contains(key, fingerprint))
+                changedPaths.put(key, path);
+        });
+
+        RecordingDiffWriter changes = new RecordingDiffWriter();
+        comparePaths(changes, changedPaths);
+        Map<String, RecordingDiffWriter> changesByPath = changes.split();
+
+        fingerprints.forEach((key, fingerprint) -> {
+            RecordingDiffWriter result;
+            if (changedPaths.containsKey(key)) {
+                result = changesByPath.get(key);
+                fingerprintCache.put(key, fingerprint, result == null ? null : result.toJson(mapper));
+            } else {
+                JsonNode cached = fingerprintCache.reuse(key);
+                result = cached == null ? null : RecordingDiffWriter.fromJson(mapper, cached);
+            }
 
-        if (expected instanceof ArrayProperty)
-            return compareArrayProperty(node, (ArrayProperty) expected, (ArrayProperty) actual);
+            if (result != null)
+                result.replay(writer);
+        });
+        fingerprintCache.retain(fingerprints.keySet());
 
-        if (expected instanceof ObjectProperty)
-            return compareObjectProperty(node, (ObjectProperty) expected, (ObjectProperty) actual);
+        log("Incremental: %d paths compared, %d reused", changedPaths.size(), paths.size() - changedPaths.size());
+    }
 
-        return true;
+    private void compareSequential(DiffWriter writer, Map<String, Path> paths) {
+        paths.forEach((key, path) -> {
+            long start = metrics == null ? 0 : System.nanoTime();
+            String template = actualSwagger.findPath(key);
+            log("Compare path: %s", key);
+            if (template == null)
+                writer.notFound(key);
+            else {
+                writer.begin(key);
+                if (!key.equals(template))
+                    writer.note("matchedPath", template);
+                comparePath(writer, key, path, actualSwagger.getSwagger().getPath(template));
+                writer.end();
+            }
+            if (metrics != null)
+                metrics.path(key, System.nanoTime() - start);
+        });
     }
 
-    private boolean compareStringProperty(ObjectNode node, StringProperty expected, StringProperty actual) {
-        if (!Objects.equal(expected.getPattern(), actual.getPattern())) {
-            node.put("pattern", String.format("Expected '%s' but actual is '%s'", expected.getPattern(), actual.getPattern()));
-            return false;
-        }
+    private void compareParallel(DiffWriter writer, Map<String, Path> paths) {
+        Map<String, PendingPath> pendingPaths = new LinkedHashMap<>();
+        paths.forEach((key, path) -> {
+            String template = actualSwagger.findPath(key);
+            if (template == null)
+                pendingPaths.put(key, null);
+            else {
+                PendingPath pendingPath = new PendingPath(template);
+                if (path.getOperationMap() != null) {
+                    Map<HttpMethod, Operation> actualOperations = actualSwagger.getSwagger().getPath(template).getOperationMap();
+                    path.getOperationMap().keySet().forEach(method ->
+                            pendingPath.operations.add(new PendingOperation(key, method, actualOperations)));
+                }
+                pendingPaths.put(key, pendingPath);
+            }
+        });
+
+        pendingPaths.forEach((key, pendingPath) -> {
+            log("Compare path: %s", key);
+            if (metrics != null)
+                metrics.path(key, 0);
+            if (pendingPath == null)
+                writer.notFound(key);
+            else {
+                writer.begin(key);
+                if (!key.equals(pendingPath.template))
+                    writer.note("matchedPath", pendingPath.template);
+                for (PendingOperation pendingOperation : pendingPath.operations)
+                    pendingOperation.await().replay(writer);
+                writer.end();
+            }
+        });
+    }
 
-        String value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+    private void comparePath(DiffWriter writer, String key, Path expected, Path actual) {
+        if(expected.getOperationMap() != null) {
+            Map<HttpMethod, Operation> actualOperations = actual.getOperationMap();
+            expected.getOperationMap().keySet().forEach(method -> compareOperation(writer, key, method, actualOperations));
         }
-
-        return true;
     }
 
-    private boolean compareBooleanProperty(ObjectNode node, BooleanProperty expected, BooleanProperty actual) {
-        Boolean value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+    private void compareOperation(DiffWriter writer, String key, HttpMethod method, Map<HttpMethod, Operation> actualOperations) {
+        Operation actualOperation = actualOperations == null ? null : actualOperations.get(method);
+        log("Compare operation: %s", method.name());
+        if (metrics != null)
+            metrics.operation();
+        if (actualOperation == null)
+            writer.notFound(method.name());
+        else {
+            writer.begin(method.name());
+            compareOperation(writer, plan.operation(key, method), actualOperation);
+            writer.end();
         }
-
-        return true;
     }
 
-    private boolean compareDateProperty(ObjectNode node, DateProperty expected, DateProperty actual) {
-        String value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
-        }
+    private void compareOperation(DiffWriter writer, OperationPlan expected, Operation actual) {
+        writer.begin("parameters");
+        expected.parametersByIn.forEach((in, parameters) -> {
+            writer.begin(in);
+            parameters.forEach(parameter -> {
+                log("Compare parameter in %s: %s", parameter.in, parameter.name);
+                if (metrics != null) {
+                    metrics.parameter();
+                    metrics.dereference(parameter.dereferenced);
+                }
 
-        return true;
-    }
+                Parameter actualParameter = actualSwagger.findParameter(actual, parameter.in, parameter.name);
 
-    private boolean compareDateTimeProperty(ObjectNode node, DateTimeProperty expected, DateTimeProperty actual) {
-        String value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
-        }
+                if (actualParameter == null)
+                    writer.notFound(parameter.name);
+                else {
+                    writer.begin(parameter.name);
+                    compareParameter(writer, parameter, actualParameter);
+                    writer.end();
+                }
+            });
+            writer.end();
+        });
+        writer.end();
 
-        return true;
+        writer.begin("responses");
+        if(expected.responses != null) {
+            Map<String, Response> actualResponses = actual.getResponses();
+            expected.responses.forEach((status, response) -> {
+                log("Compare response with status: %s", status);
+                Response actualResponse = actualResponses == null ? null : actualResponses.get(status);
+                if (actualResponse == null)
+                    writer.notFound(status);
+                else {
+                    writer.begin(status);
+                    compareResponse(writer, response, actualResponse);
+                    writer.end();
+                }
+            });
+        }
+        writer.end();
     }
 
-    private boolean compareDoubleProperty(ObjectNode node, DoubleProperty expected, DoubleProperty actual) {
-        Double value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
-        }
+    private void compareParameter(DiffWriter writer, ParameterPlan expected, Parameter actual) {
+        if (structuralHashing && isIdentical(expected.hash, actualSwagger.getHasher().hashParameter(actual)))
+            return;
 
-        return true;
+        if (expected.body && expected.schema != null) {
+            traverse(writer, traversal -> compareModel(traversal, expected.schema, ((BodyParameter) actual).getSchema()));
+        }
+        if (expected.serializable) {
+            compareAbstractSerializableParameter(writer, expected, ((AbstractSerializableParameter<?>) actual));
+        }
     }
 
-    private boolean compareFloatProperty(ObjectNode node, FloatProperty expected, FloatProperty actual) {
-        Float value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+    private void compareAbstractSerializableParameter(DiffWriter writer, ParameterPlan expected, AbstractSerializableParameter<?> actual) {
+        if (!Objects.equal(expected.type, actual.getType())) {
+            writer.mismatch(DiffKind.TYPE, expected.type, actual.getType());
+            return;
         }
 
-        return true;
-    }
+        if (!Objects.equal(expected.format, actual.getFormat())) {
+            writer.mismatch(DiffKind.FORMAT, expected.format, actual.getFormat());
+            return;
+        }
 
-    private boolean compareIntegerProperty(ObjectNode node, IntegerProperty expected, IntegerProperty actual) {
-        Integer value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+        if (!Objects.equal(expected.pattern, actual.getPattern())) {
+            writer.mismatch(DiffKind.PATTERN, expected.pattern, actual.getPattern());
+            return;
         }
 
-        return true;
-    }
+        if (!compareEnum(writer, expected.enumPlan, actual.getEnum()))
+            return;
 
-    private boolean compareLongProperty(ObjectNode node, LongProperty expected, LongProperty actual) {
-        Long value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+        if (expected.items != null) {
+            if (actual.getItems() == null) {
+                writer.notFound("items");
+                return;
+            }
+
+            writer.begin("items");
+            traverse(writer, traversal -> compareProperty(traversal, expected.items, actual.getItems()));
+            writer.end();
         }
+    }
 
-        return true;
+    private void compareModel(Traversal traversal, ModelPlan expectedRef, Model actualRef) {
+        ModelPlan expected = plan.resolve(expectedRef);
+        Model actual = actualSwagger.dereferenceModel(actualRef);
+        if (metrics != null) {
+            metrics.dereference(expectedRef.ref != null);
+            metrics.dereference(actualRef, actual);
+        }
+        if (structuralHashing && isIdentical(expected.hash, actualSwagger.getHasher().hashModel(actual)))
+            return;
+
+        String refs = refPair(expectedRef.ref, refOf(actualRef));
+        if (!traversal.enter(refs))
+            return;
+        compareProperties(traversal, expected.properties, actual.getProperties());
+        traversal.leave(refs);
     }
 
-    private boolean comparePasswordProperty(ObjectNode node, PasswordProperty expected, PasswordProperty actual) {
-        if (!Objects.equal(expected.getPattern(), actual.getPattern())) {
-            node.put("pattern", String.format("Expected '%s' but actual is '%s'", expected.getPattern(), actual.getPattern()));
-            return false;
+    private void compareResponse(DiffWriter writer, ResponsePlan expected, Response actualRef) {
+        Response actual = actualSwagger.dereferenceResponse(actualRef);
+        if (metrics != null) {
+            metrics.dereference(expected.dereferenced);
+            metrics.dereference(actualRef, actual);
         }
+        if (structuralHashing && isIdentical(expected.hash, actualSwagger.getHasher().hashResponse(actual)))
+            return;
 
-        String value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
+        if(expected.schema != null) {
+            if(actual.getSchema() == null) {
+                writer.notFound("schema");
+            }
+            else
+                traverse(writer, traversal -> compareProperty(traversal, expected.schema, actual.getSchema()));
         }
+    }
 
-        return true;
+    /**
+     * Compares two properties, nested properties are compared by steps scheduled on the traversal. A pair of
+     * references already being compared further up is skipped, so recursive definitions are compared once.
+     */
+    private void compareProperty(Traversal traversal, PropertyPlan expected, Property actual) {
+        String refs = refPair(expected.ref, refOf(actual));
+        if (!traversal.enter(refs))
+            return;
+
+        if (metrics == null)
+            compareResolvedProperty(traversal, plan.resolve(expected), actualSwagger.dereferenceProperty(actual));
+        else {
+            metrics.enterProperty();
+            Property resolvedActual = actualSwagger.dereferenceProperty(actual);
+            metrics.dereference(expected.ref != null);
+            metrics.dereference(actual, resolvedActual);
+            compareResolvedProperty(traversal, plan.resolve(expected), resolvedActual);
+            traversal.then(metrics::exitProperty);
+        }
+        traversal.leave(refs);
     }
 
-    private boolean compareUUIDProperty(ObjectNode node, UUIDProperty expected, UUIDProperty actual) {
-        if (!Objects.equal(expected.getPattern(), actual.getPattern())) {
-            node.put("pattern", String.format("Expected '%s' but actual is '%s'", expected.getPattern(), actual.getPattern()));
-            return false;
-        }
+    private void compareResolvedProperty(Traversal traversal, PropertyPlan expected, Property actual) {
+        if (structuralHashing && isIdentical(expected.hash, actualSwagger.getHasher().hashProperty(actual)))
+            return;
+
+        DiffWriter writer = traversal.writer;
+        if (!Objects.equal(expected.type, actual.getType()) || expected.propertyClass != actual.getClass())
+            writer.mismatch(DiffKind.TYPE, expected.type, actual.getType());
+        else if (!Objects.equal(expected.format, actual.getFormat()))
+            writer.mismatch(DiffKind.FORMAT, expected.format, actual.getFormat());
+        else if (expected.array)
+            compareArrayProperty(traversal, expected, (ArrayProperty) actual);
+        else if (expected.object)
+            compareProperties(traversal, expected.properties, ((ObjectProperty) actual).getProperties());
+        else if (expected.patternOf != null && !Objects.equal(expected.pattern, expected.patternOf.apply(actual)))
+            writer.mismatch(DiffKind.PATTERN, expected.pattern, expected.patternOf.apply(actual));
+        else if (expected.enumOf != null)
+            compareEnum(writer, expected.enumPlan, expected.enumOf.apply(actual));
+    }
 
-        String value = Utils.findNotContains(expected.getEnum(), actual.getEnum());
-        if (value != null) {
-            node.put("enum", String.format("Expected contains '%s' but not found", value));
-            return false;
-        }
+    private boolean compareEnum(DiffWriter writer, EnumPlan expected, List<?> actual) {
+        List<?> missing = expected.missing(actual);
+        List<?> extra = reportExtraEnumValues && expected.present && actual != null ? expected.extra(actual) : Collections.emptyList();
+        if (missing.isEmpty() && extra.isEmpty())
+            return true;
 
-        return true;
+        writer.enumMismatch(missing, extra);
+        return false;
     }
 
-    private boolean compareArrayProperty(ObjectNode node, ArrayProperty expected, ArrayProperty actual) {
-        ObjectNode itemNode = mapper.createObjectNode();
-        if(expected.getItems() == null || actual.getItems() == null) {
-            node.put("items", "Not found");
+    private boolean isIdentical(long expectedHash, long actualHash) {
+        if (expectedHash == StructuralHasher.UNHASHABLE || expectedHash != actualHash)
             return false;
+        skippedSubtrees.incrementAndGet();
+        return true;
+    }
+
+    private void compareArrayProperty(Traversal traversal, PropertyPlan expected, ArrayProperty actual) {
+        if(expected.items == null || actual.getItems() == null) {
+            traversal.writer.notFound("items");
+            return;
         }
-        boolean isSame = compareProperty(itemNode, expected.getItems(), actual.getItems());
-        if (!isSame)
-            node.set("items", itemNode);
-        return isSame;
+        traversal.writer.begin("items");
+        compareProperty(traversal, expected.items, actual.getItems());
+        traversal.then(traversal.writer::end);
     }
 
-    private boolean compareObjectProperty(ObjectNode node, ObjectProperty expected, ObjectProperty actual) {
-        AtomicBoolean isSame = new AtomicBoolean(true);
-        final Map<String, Property> actualProperties = actual.getProperties();
-        if(expected.getProperties() != null)
-            expected.getProperties().forEach((key, property) -> {
+    private void compareProperties(Traversal traversal, Map<String, PropertyPlan> expectedProperties, Map<String, Property> actualProperties) {
+        if(expectedProperties != null)
+            expectedProperties.forEach((key, property) -> traversal.then(() -> {
                 log("Compare property: %s", key);
                 Property actualProperty = actualProperties == null ? null : actualProperties.get(key);
-                if (actualProperty == null) {
-                    node.put(key, "Not found");
-                    isSame.set(false);
-                } else {
-                    ObjectNode propertyNode = mapper.createObjectNode();
-                    if (!compareProperty(propertyNode, property, actualProperty)) {
-                        node.set(key, propertyNode);
-                        isSame.set(false);
-                    }
+                if (actualProperty == null)
+                    traversal.writer.notFound(key);
+                else {
+                    traversal.writer.begin(key);
+                    compareProperty(traversal, property, actualProperty);
+                    traversal.then(traversal.writer::end);
                 }
-            });
-        return isSame.get();
+            }));
+    }
+
+    private void traverse(DiffWriter writer, Consumer<Traversal> start) {
+        Traversal traversal = new Traversal(writer);
+        if (metrics == null)
+            traversal.run(() -> start.accept(traversal));
+        else {
+            // A traversal that throws skips its pending exitProperty steps, pooled threads must not keep that depth
+            metrics.resetDepth();
+            try {
+                traversal.run(() -> start.accept(traversal));
+            } finally {
+                metrics.resetDepth();
+            }
+        }
     }
 
-    private Path findPath(String path, Swagger swagger) {
-        //TODO: handle path variable
-        return swagger.getPath(path);
+    private static String refPair(String expectedRef, String actualRef) {
+        return expectedRef == null || actualRef == null ? null : expectedRef + " " + actualRef;
     }
 
-    private Parameter findParameter(String in, String name, Operation operation) {
-        if (operation.getParameters() != null)
-            for (Parameter p : operation.getParameters()) {
-                if (in.equals(p.getIn()) && name.equals(p.getName()))
-                    return p;
-            }
+    private static String refOf(Object node) {
+        if (node instanceof RefProperty)
+            return ((RefProperty) node).get$ref();
+        if (node instanceof RefModel)
+            return ((RefModel) node).get$ref();
         return null;
     }
 
-    private Parameter dereferenceParameter(Parameter parameter, Swagger swagger) {
-        if (parameter instanceof RefParameter) {
-            return (Parameter) dereference(((RefParameter) parameter).get$ref(), swagger);
+    private void log(String msg, Object... args) {
+        if(debug) {
+            List<String> buffer = logBuffer.get();
+            if (buffer == null)
+                System.out.println(String.format(msg, args));
+            else
+                buffer.add(String.format(msg, args));
         }
-        return parameter;
     }
 
-    private Model dereferenceModel(Model model, Swagger swagger) {
-        if (model instanceof RefModel) {
-            return dereference(((RefModel) model).get$ref(), swagger);
+    /**
+     * Explicit worklist that models and properties are compared on, so the depth of a schema is not limited by
+     * the thread stack. Steps scheduled by a running step run right after it and in order, like recursive calls
+     * would. Pairs of references being compared are tracked until their nested steps are done.
+     */
+    private static class Traversal {
+
+        private final DiffWriter writer;
+        private final Deque<Runnable> steps = new ArrayDeque<>();
+        private final List<Runnable> scheduled = new ArrayList<>();
+        private final Set<String> activeRefs = new HashSet<>();
+
+        Traversal(DiffWriter writer) {
+            this.writer = writer;
+        }
+
+        void run(Runnable start) {
+            steps.push(start);
+            while (!steps.isEmpty()) {
+                steps.pop().run();
+                for (int i = scheduled.size() - 1; i >= 0; i--)
+                    steps.push(scheduled.get(i));
+                scheduled.clear();
+            }
         }
-        return model;
-    }
 
-    private Property dereferenceProperty(Property property, Swagger swagger) {
-        if (property instanceof RefProperty) {
-            Model model = dereference(((RefProperty) property).get$ref(), swagger);
-            ObjectProperty objectProperty = new ObjectProperty();
-            objectProperty.setProperties(model.getProperties());
-            objectProperty.setType("object");
-            return objectProperty;
+        void then(Runnable step) {
+            scheduled.add(step);
         }
-        return property;
-    }
 
-    private Response dereferenceResponse(Response response, Swagger swagger) {
-        if (response instanceof RefResponse) {
-            return dereference(((RefResponse) response).get$ref(), swagger);
+        /**
+         * Returns false if the given pair of references is already being compared. A null pair is never tracked.
+         */
+        boolean enter(String refs) {
+            return refs == null || activeRefs.add(refs);
+        }
+
+        /**
+         * Releases the pair of references once the steps scheduled so far are done.
+         */
+        void leave(String refs) {
+            if (refs != null)
+                then(() -> activeRefs.remove(refs));
         }
-        return response;
     }
 
-    private <T> T dereference(String $ref, Swagger swagger) {
-        T result = null;
-        if ($ref.startsWith(RefType.DEFINITION.getInternalPrefix()))
-            result = (T)swagger.getDefinitions().get($ref.substring(RefType.DEFINITION.getInternalPrefix().length()));
-        if ($ref.startsWith(RefType.PARAMETER.getInternalPrefix()))
-            result = (T)swagger.getParameters().get($ref.substring(RefType.PARAMETER.getInternalPrefix().length()));
-        if ($ref.startsWith(RefType.PATH.getInternalPrefix()))
-            result = (T)swagger.getPaths().get($ref.substring(RefType.PATH.getInternalPrefix().length()));
-        if ($ref.startsWith(RefType.RESPONSE.getInternalPrefix()))
-            result = (T)swagger.getResponses().get($ref.substring(RefType.RESPONSE.getInternalPrefix().length()));
+    private static class PendingPath {
 
-        if(result == null)
-            throw new ReferenceNotFoundException("Not found definition of " + $ref);
+        private final String template;
+        private final List<PendingOperation> operations = new ArrayList<>();
 
-        return result;
+        PendingPath(String template) {
+            this.template = template;
+        }
     }
 
-    private void log(String msg, Object... args) {
-        if(debug)
-            System.out.println(String.format(msg, args));
+    private class PendingOperation {
+
+        private final HttpMethod method;
+        private final List<String> logs = new ArrayList<>();
+        private final Future<RecordingDiffWriter> result;
+
+        PendingOperation(String key, HttpMethod method, Map<HttpMethod, Operation> actualOperations) {
+            this.method = method;
+            this.result = executor.submit(() -> {
+                long start = metrics == null ? 0 : System.nanoTime();
+                logBuffer.set(logs);
+                try {
+                    RecordingDiffWriter writer = new RecordingDiffWriter();
+                    compareOperation(writer, key, method, actualOperations);
+                    return writer;
+                } finally {
+                    logBuffer.remove();
+                    if (metrics != null)
+                        metrics.addPathTime(key, System.nanoTime() - start);
+                }
+            });
+        }
+
+        RecordingDiffWriter await() {
+            try {
+                RecordingDiffWriter recording = result.get();
+                logs.forEach(System.out::println);
+                return recording;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while comparing operation " + method, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
     }
 }
@@ -0,0 +1,844 @@
+package com.rey.swagger;
+
+import v2.io.swagger.models.ArrayModel;
+import v2.io.swagger.models.ComposedModel;
+import v2.io.swagger.models.HttpMethod;
+import v2.io.swagger.models.Info;
+import v2.io.swagger.models.Model;
+import v2.io.swagger.models.ModelImpl;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Path;
+import v2.io.swagger.models.RefModel;
+import v2.io.swagger.models.RefResponse;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.Scheme;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.AbstractSerializableParameter;
+import v2.io.swagger.models.parameters.BodyParameter;
+import v2.io.swagger.models.parameters.CookieParameter;
+import v2.io.swagger.models.parameters.FormParameter;
+import v2.io.swagger.models.parameters.HeaderParameter;
+import v2.io.swagger.models.parameters.Parameter;
+import v2.io.swagger.models.parameters.PathParameter;
+import v2.io.swagger.models.parameters.QueryParameter;
+import v2.io.swagger.models.parameters.RefParameter;
+import v2.io.swagger.models.properties.AbstractProperty;
+import v2.io.swagger.models.properties.ArrayProperty;
+import v2.io.swagger.models.properties.BaseIntegerProperty;
+import v2.io.swagger.models.properties.BinaryProperty;
+import v2.io.swagger.models.properties.BooleanProperty;
+import v2.io.swagger.models.properties.ByteArrayProperty;
+import v2.io.swagger.models.properties.DateProperty;
+import v2.io.swagger.models.properties.DateTimeProperty;
+import v2.io.swagger.models.properties.DecimalProperty;
+import v2.io.swagger.models.properties.DoubleProperty;
+import v2.io.swagger.models.properties.EmailProperty;
+import v2.io.swagger.models.properties.FileProperty;
+import v2.io.swagger.models.properties.FloatProperty;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.LongProperty;
+import v2.io.swagger.models.properties.MapProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.PasswordProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.properties.StringProperty;
+import v2.io.swagger.models.properties.UUIDProperty;
+import v2.io.swagger.parser.SwaggerParser;
+import v2.io.swagger.models.refs.RefType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compact binary form of a parsed spec, for baselines that are compared often but rarely change. Strings are
+ * stored once in a table, and references are stored as indices into the definitions, parameters and responses
+ * of the spec. Only what the comparison and payload routing read is kept, with the host, base path, schemes and
+ * media types of the spec, so a snapshot is not a replacement for the spec itself.
+ */
+public final class SwaggerSnapshot {
+
+    private static final int MAGIC = 0x53574753;
+    private static final int VERSION = 2;
+
+    private static final List<Class<? extends Property>> PROPERTY_CLASSES = Arrays.asList(
+            StringProperty.class, EmailProperty.class, PasswordProperty.class, UUIDProperty.class,
+            ByteArrayProperty.class, BinaryProperty.class, FileProperty.class, BooleanProperty.class,
+            DateProperty.class, DateTimeProperty.class, BaseIntegerProperty.class, IntegerProperty.class,
+            LongProperty.class, DecimalProperty.class, FloatProperty.class, DoubleProperty.class,
+            ArrayProperty.class, MapProperty.class, ObjectProperty.class, RefProperty.class);
+
+    private static final List<RefType> REF_TYPES = Arrays.asList(RefType.DEFINITION, RefType.PARAMETER, RefType.RESPONSE);
+
+    private static final int NULL = 0;
+    private static final int REF = 1;
+    private static final int BODY = 2;
+    private static final int QUERY = 3;
+    private static final int PATH = 4;
+    private static final int HEADER = 5;
+    private static final int FORM = 6;
+    private static final int COOKIE = 7;
+    private static final int MODEL = 8;
+    private static final int ARRAY_MODEL = 9;
+    private static final int COMPOSED_MODEL = 10;
+    private static final int RESPONSE = 11;
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int FLOAT = 4;
+    private static final int DOUBLE = 5;
+    private static final int BOOLEAN = 6;
+
+    private SwaggerSnapshot() {
+    }
+
+    public static void write(Swagger swagger, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            new Writer(swagger).write(out);
+        }
+    }
+
+    /**
+     * Loads a snapshot written by {@link #write}. The file is memory-mapped and decoded in a single pass.
+     */
+    public static Swagger read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+                throw new IllegalArgumentException("Not a snapshot: " + file);
+            if (buffer.getInt() != VERSION)
+                throw new IllegalArgumentException("Unsupported snapshot version: " + file);
+            return new Reader(buffer).read();
+        }
+    }
+
+    /**
+     * Reads the file as a snapshot if it is one, otherwise parses it as a spec.
+     */
+    public static Swagger load(String path) throws IOException {
+        File file = new File(path);
+        return isSnapshot(file) ? read(file) : new SwaggerParser().read(path);
+    }
+
+    public static boolean isSnapshot(File file) {
+        if (!file.isFile() || file.length() < 4)
+            return false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, 0);
+            buffer.flip();
+            return buffer.getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static class Writer {
+
+        private final Swagger swagger;
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<RefType, Map<String, Integer>> targets = new LinkedHashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream body = new DataOutputStream(bytes);
+
+        Writer(Swagger swagger) {
+            this.swagger = swagger;
+        }
+
+        void write(OutputStream out) throws IOException {
+            writeString(swagger.getSwagger());
+            writeString(swagger.getInfo() == null ? null : swagger.getInfo().getTitle());
+            writeString(swagger.getInfo() == null ? null : swagger.getInfo().getVersion());
+            writeString(swagger.getHost());
+            writeString(swagger.getBasePath());
+            writeStrings(swagger.getSchemes() == null ? null : swagger.getSchemes().stream().map(Scheme::toValue).collect(Collectors.toList()));
+            writeStrings(swagger.getConsumes());
+            writeStrings(swagger.getProduces());
+
+            writeNames(RefType.DEFINITION, swagger.getDefinitions());
+            writeNames(RefType.PARAMETER, swagger.getParameters());
+            writeNames(RefType.RESPONSE, swagger.getResponses());
+            if (swagger.getDefinitions() != null)
+                for (Model model : swagger.getDefinitions().values())
+                    writeModel(model);
+            if (swagger.getParameters() != null)
+                for (Parameter parameter : swagger.getParameters().values())
+                    writeParameter(parameter);
+            if (swagger.getResponses() != null)
+                for (Response response : swagger.getResponses().values())
+                    writeResponse(response);
+
+            writeSize(swagger.getPaths());
+            if (swagger.getPaths() != null)
+                for (Map.Entry<String, Path> entry : swagger.getPaths().entrySet()) {
+                    writeString(entry.getKey());
+                    Map<HttpMethod, Operation> operations = entry.getValue().getOperationMap();
+                    writeVarint(operations.size());
+                    for (Map.Entry<HttpMethod, Operation> operation : operations.entrySet()) {
+                        writeVarint(operation.getKey().ordinal());
+                        writeOperation(operation.getValue());
+                    }
+                }
+
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            writeVarint(header, strings.size());
+            for (String string : strings.keySet()) {
+                byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(header, utf8.length);
+                header.write(utf8);
+            }
+            bytes.writeTo(header);
+            header.flush();
+        }
+
+        private void writeNames(RefType type, Map<String, ?> map) throws IOException {
+            Map<String, Integer> indexes = new LinkedHashMap<>();
+            writeSize(map);
+            if (map != null)
+                for (String name : map.keySet()) {
+                    indexes.put(name, indexes.size());
+                    writeString(name);
+                }
+            targets.put(type, indexes);
+        }
+
+        private void writeOperation(Operation operation) throws IOException {
+            writeString(operation.getOperationId());
+            writeStrings(operation.getTags());
+            writeSize(operation.getParameters());
+            if (operation.getParameters() != null)
+                for (Parameter parameter : operation.getParameters())
+                    writeParameter(parameter);
+            writeSize(operation.getResponses());
+            if (operation.getResponses() != null)
+                for (Map.Entry<String, Response> entry : operation.getResponses().entrySet()) {
+                    writeString(entry.getKey());
+                    writeResponse(entry.getValue());
+                }
+        }
+
+        private void writeParameter(Parameter parameter) throws IOException {
+            if (parameter instanceof RefParameter) {
+                body.writeByte(REF);
+                writeRef(((RefParameter) parameter).get$ref());
+                return;
+            }
+
+            body.writeByte(parameterTag(parameter));
+            writeString(parameter.getName());
+            body.writeBoolean(parameter.getRequired());
+            if (parameter instanceof BodyParameter)
+                writeModel(((BodyParameter) parameter).getSchema());
+            else {
+                AbstractSerializableParameter<?> serializable = (AbstractSerializableParameter<?>) parameter;
+                writeString(serializable.getType());
+                writeString(serializable.getFormat());
+                writeString(serializable.getPattern());
+                writeString(serializable.getCollectionFormat());
+                writeValues(serializable.getEnum());
+                writeProperty(serializable.getItems());
+            }
+        }
+
+        private int parameterTag(Parameter parameter) {
+            if (parameter instanceof BodyParameter)
+                return BODY;
+            if (parameter instanceof QueryParameter)
+                return QUERY;
+            if (parameter instanceof PathParameter)
+                return PATH;
+            if (parameter instanceof HeaderParameter)
+                return HEADER;
+            if (parameter instanceof FormParameter)
+                return FORM;
+            if (parameter instanceof CookieParameter)
+                return COOKIE;
+            throw new IllegalArgumentException("Unsupported parameter: " + parameter.getClass().getName());
+        }
+
+        private void writeModel(Model model) throws IOException {
+            if (model == null)
+                body.writeByte(NULL);
+            else if (model instanceof RefModel) {
+                body.writeByte(REF);
+                writeRef(((RefModel) model).get$ref());
+            } else if (model instanceof ArrayModel) {
+                body.writeByte(ARRAY_MODEL);
+                writeProperty(((ArrayModel) model).getItems());
+                writeProperties(model.getProperties());
+            } else if (model instanceof ComposedModel) {
+                body.writeByte(COMPOSED_MODEL);
+                List<Model> allOf = ((ComposedModel) model).getAllOf();
+                writeSize(allOf);
+                if (allOf != null)
+                    for (Model part : allOf)
+                        writeModel(part);
+                writeProperties(model.getProperties());
+            } else if (model instanceof ModelImpl) {
+                ModelImpl impl = (ModelImpl) model;
+                body.writeByte(MODEL);
+                writeString(impl.getType());
+                writeString(impl.getFormat());
+                writeValues(impl.getEnum());
+                writeProperty(impl.getAdditionalProperties());
+                writeProperties(impl.getProperties());
+            } else
+                throw new IllegalArgumentException("Unsupported model: " + model.getClass().getName());
+        }
+
+        private void writeResponse(Response response) throws IOException {
+            if (response == null)
+                body.writeByte(NULL);
+            else if (response instanceof RefResponse) {
+                body.writeByte(REF);
+                writeRef(((RefResponse) response).get$ref());
+            } else {
+                body.writeByte(RESPONSE);
+                writeString(response.getDescription());
+                writeProperty(response.getSchema());
+            }
+        }
+
+        private void writeProperties(Map<String, Property> properties) throws IOException {
+            writeSize(properties);
+            if (properties != null)
+                for (Map.Entry<String, Property> entry : properties.entrySet()) {
+                    writeString(entry.getKey());
+                    writeProperty(entry.getValue());
+                }
+        }
+
+        private void writeProperty(Property property) throws IOException {
+            if (property == null) {
+                writeVarint(0);
+                return;
+            }
+
+            int index = PROPERTY_CLASSES.indexOf(property.getClass());
+            if (index < 0)
+                throw new IllegalArgumentException("Unsupported property: " + property.getClass().getName());
+            writeVarint(index + 1);
+            writeString(property.getType());
+            writeString(property.getFormat());
+            body.writeBoolean(property.getRequired());
+
+            if (property instanceof RefProperty)
+                writeRef(((RefProperty) property).get$ref());
+            else if (property instanceof ArrayProperty)
+                writeProperty(((ArrayProperty) property).getItems());
+            else if (property instanceof MapProperty)
+                writeProperty(((MapProperty) property).getAdditionalProperties());
+            else if (property instanceof ObjectProperty)
+                writeProperties(((ObjectProperty) property).getProperties());
+            else {
+                writeString(getPattern(property));
+                writeValues(getEnum(property));
+            }
+        }
+
+        /**
+         * Writes a reference as the index of its target, or as the reference itself if it does not point into
+         * this spec.
+         */
+        private void writeRef(String $ref) throws IOException {
+            for (int type = 0; type < REF_TYPES.size(); type++) {
+                RefType refType = REF_TYPES.get(type);
+                if ($ref.startsWith(refType.getInternalPrefix())) {
+                    Integer index = targets.get(refType).get($ref.substring(refType.getInternalPrefix().length()));
+                    if (index != null) {
+                        writeVarint(type + 1);
+                        writeVarint(index);
+                        return;
+                    }
+                }
+            }
+            writeVarint(0);
+            writeString($ref);
+        }
+
+        private void writeValues(List<?> values) throws IOException {
+            writeSize(values);
+            if (values != null)
+                for (Object value : values)
+                    writeValue(value);
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null)
+                body.writeByte(NULL);
+            else if (value instanceof Integer) {
+                body.writeByte(INTEGER);
+                body.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                body.writeByte(LONG);
+                body.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                body.writeByte(FLOAT);
+                body.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                body.writeByte(DOUBLE);
+                body.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                body.writeByte(BOOLEAN);
+                body.writeBoolean((Boolean) value);
+            } else {
+                body.writeByte(STRING);
+                writeString(value.toString());
+            }
+        }
+
+        private void writeStrings(List<String> values) throws IOException {
+            writeSize(values);
+            if (values != null)
+                for (String value : values)
+                    writeString(value);
+        }
+
+        /**
+         * Writes the index of the string in the string table plus one, or zero for null.
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null)
+                writeVarint(0);
+            else {
+                Integer index = strings.get(value);
+                if (index == null) {
+                    index = strings.size();
+                    strings.put(value, index);
+                }
+                writeVarint(index + 1);
+            }
+        }
+
+        /**
+         * Writes the size of the collection plus one, or zero for null.
+         */
+        private void writeSize(Object collection) throws IOException {
+            if (collection == null)
+                writeVarint(0);
+            else
+                writeVarint(1 + (collection instanceof Map ? ((Map<?, ?>) collection).size() : ((List<?>) collection).size()));
+        }
+
+        private void writeVarint(int value) throws IOException {
+            writeVarint(body, value);
+        }
+
+        private static void writeVarint(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    private static class Reader {
+
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        private final List<List<String>> targets = new ArrayList<>();
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[readVarint()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[readVarint()];
+                buffer.get(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        }
+
+        Swagger read() {
+            Swagger swagger = new Swagger();
+            swagger.setSwagger(readString());
+            String title = readString();
+            String version = readString();
+            if (title != null || version != null) {
+                Info info = new Info();
+                info.setTitle(title);
+                info.setVersion(version);
+                swagger.setInfo(info);
+            }
+            swagger.setHost(readString());
+            swagger.setBasePath(readString());
+            List<String> schemes = readStrings();
+            if (schemes != null)
+                swagger.setSchemes(schemes.stream().map(Scheme::forValue).collect(Collectors.toList()));
+            swagger.setConsumes(readStrings());
+            swagger.setProduces(readStrings());
+
+            List<String> definitions = readNames();
+            List<String> parameters = readNames();
+            List<String> responses = readNames();
+            if (definitions != null) {
+                Map<String, Model> map = new LinkedHashMap<>();
+                for (String name : definitions)
+                    map.put(name, readModel());
+                swagger.setDefinitions(map);
+            }
+            if (parameters != null) {
+                Map<String, Parameter> map = new LinkedHashMap<>();
+                for (String name : parameters)
+                    map.put(name, readParameter());
+                swagger.setParameters(map);
+            }
+            if (responses != null) {
+                Map<String, Response> map = new LinkedHashMap<>();
+                for (String name : responses)
+                    map.put(name, readResponse());
+                swagger.setResponses(map);
+            }
+
+            int pathCount = readSize();
+            if (pathCount >= 0) {
+                Map<String, Path> paths = new LinkedHashMap<>();
+                for (int i = 0; i < pathCount; i++) {
+                    String key = readString();
+                    Path path = new Path();
+                    int operationCount = readVarint();
+                    for (int j = 0; j < operationCount; j++) {
+                        HttpMethod method = HttpMethod.values()[readVarint()];
+                        path.set(method.name().toLowerCase(), readOperation());
+                    }
+                    paths.put(key, path);
+                }
+                swagger.setPaths(paths);
+            }
+            return swagger;
+        }
+
+        private List<String> readNames() {
+            int size = readSize();
+            List<String> names = size < 0 ? Collections.emptyList() : new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                names.add(readString());
+            targets.add(names);
+            return size < 0 ? null : names;
+        }
+
+        private Operation readOperation() {
+            Operation operation = new Operation();
+            operation.setOperationId(readString());
+            operation.setTags(readStrings());
+            int parameterCount = readSize();
+            if (parameterCount >= 0) {
+                List<Parameter> parameters = new ArrayList<>(parameterCount);
+                for (int i = 0; i < parameterCount; i++)
+                    parameters.add(readParameter());
+                operation.setParameters(parameters);
+            }
+            int responseCount = readSize();
+            if (responseCount >= 0) {
+                Map<String, Response> responses = new LinkedHashMap<>();
+                for (int i = 0; i < responseCount; i++)
+                    responses.put(readString(), readResponse());
+                operation.setResponses(responses);
+            }
+            return operation;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Parameter readParameter() {
+            int tag = buffer.get();
+            if (tag == REF)
+                return new RefParameter(readRef());
+
+            Parameter parameter = createParameter(tag);
+            parameter.setName(readString());
+            parameter.setRequired(buffer.get() != 0);
+            if (parameter instanceof BodyParameter)
+                ((BodyParameter) parameter).setSchema(readModel());
+            else {
+                AbstractSerializableParameter<?> serializable = (AbstractSerializableParameter<?>) parameter;
+                serializable.setType(readString());
+                serializable.setFormat(readString());
+                serializable.setPattern(readString());
+                serializable.setCollectionFormat(readString());
+                serializable.setEnum((List<String>) (List<?>) readValues());
+                serializable.setItems(readProperty());
+            }
+            return parameter;
+        }
+
+        private Parameter createParameter(int tag) {
+            switch (tag) {
+                case BODY:
+                    return new BodyParameter();
+                case QUERY:
+                    return new QueryParameter();
+                case PATH:
+                    return new PathParameter();
+                case HEADER:
+                    return new HeaderParameter();
+                case FORM:
+                    return new FormParameter();
+                case COOKIE:
+                    return new CookieParameter();
+                default:
+                    throw new IllegalArgumentException("Corrupted snapshot, unknown parameter " + tag);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Model readModel() {
+            int tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case REF:
+                    return new RefModel(readRef());
+                case ARRAY_MODEL:
+                    ArrayModel arrayModel = new ArrayModel();
+                    arrayModel.setItems(readProperty());
+                    Map<String, Property> arrayProperties = readProperties();
+                    if (arrayProperties != null)
+                        arrayModel.setProperties(arrayProperties);
+                    return arrayModel;
+                case COMPOSED_MODEL:
+                    ComposedModel composedModel = new ComposedModel();
+                    int size = readSize();
+                    if (size >= 0) {
+                        List<Model> allOf = new ArrayList<>(size);
+                        for (int i = 0; i < size; i++)
+                            allOf.add(readModel());
+                        composedModel.setAllOf(allOf);
+                    }
+                    Map<String, Property> composedProperties = readProperties();
+                    if (composedProperties != null)
+                        composedModel.setProperties(composedProperties);
+                    return composedModel;
+                case MODEL:
+                    ModelImpl model = new ModelImpl();
+                    model.setType(readString());
+                    model.setFormat(readString());
+                    model.setEnum((List<String>) (List<?>) readValues());
+                    model.setAdditionalProperties(readProperty());
+                    Map<String, Property> properties = readProperties();
+                    if (properties != null)
+                        model.setProperties(properties);
+                    return model;
+                default:
+                    throw new IllegalArgumentException("Corrupted snapshot, unknown model " + tag);
+            }
+        }
+
+        private Response readResponse() {
+            int tag = buffer.get();
+            if (tag == NULL)
+                return null;
+            if (tag == REF) {
+                RefResponse response = new RefResponse();
+                response.set$ref(readRef());
+                return response;
+            }
+            Response response = new Response();
+            response.setDescription(readString());
+            response.setSchema(readProperty());
+            return response;
+        }
+
+        private Map<String, Property> readProperties() {
+            int size = readSize();
+            if (size < 0)
+                return null;
+            Map<String, Property> properties = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++)
+                properties.put(readString(), readProperty());
+            return properties;
+        }
+
+        private Property readProperty() {
+            int index = readVarint();
+            if (index == 0)
+                return null;
+
+            Property property;
+            try {
+                property = PROPERTY_CLASSES.get(index - 1).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            ((AbstractProperty) property).setType(readString());
+            ((AbstractProperty) property).setFormat(readString());
+            property.setRequired(buffer.get() != 0);
+
+            if (property instanceof RefProperty)
+                ((RefProperty) property).set$ref(readRef());
+            else if (property instanceof ArrayProperty)
+                ((ArrayProperty) property).setItems(readProperty());
+            else if (property instanceof MapProperty)
+                ((MapProperty) property).setAdditionalProperties(readProperty());
+            else if (property instanceof ObjectProperty) {
+                Map<String, Property> properties = readProperties();
+                if (properties != null)
+                    ((ObjectProperty) property).setProperties(properties);
+            }
+            else {
+                setPattern(property, readString());
+                setEnum(property, readValues());
+            }
+            return property;
+        }
+
+        private String readRef() {
+            int type = readVarint();
+            if (type == 0)
+                return readString();
+            return REF_TYPES.get(type - 1).getInternalPrefix() + targets.get(type - 1).get(readVarint());
+        }
+
+        private List<Object> readValues() {
+            int size = readSize();
+            if (size < 0)
+                return null;
+            List<Object> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                values.add(readValue());
+            return values;
+        }
+
+        private Object readValue() {
+            int tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case INTEGER:
+                    return buffer.getInt();
+                case LONG:
+                    return buffer.getLong();
+                case FLOAT:
+                    return buffer.getFloat();
+                case DOUBLE:
+                    return buffer.getDouble();
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                default:
+                    throw new IllegalArgumentException("Corrupted snapshot, unknown value " + tag);
+            }
+        }
+
+        private List<String> readStrings() {
+            int size = readSize();
+            if (size < 0)
+                return null;
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                values.add(readString());
+            return values;
+        }
+
+        private String readString() {
+            int index = readVarint();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        /**
+         * Returns the size of the collection, or -1 for null.
+         */
+        private int readSize() {
+            return readVarint() - 1;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+    }
+
+    private static String getPattern(Property property) {
+        if (property instanceof StringProperty)
+            return ((StringProperty) property).getPattern();
+        if (property instanceof PasswordProperty)
+            return ((PasswordProperty) property).getPattern();
+        if (property instanceof UUIDProperty)
+            return ((UUIDProperty) property).getPattern();
+        return null;
+    }
+
+    private static void setPattern(Property property, String pattern) {
+        if (property instanceof StringProperty)
+            ((StringProperty) property).setPattern(pattern);
+        else if (property instanceof PasswordProperty)
+            ((PasswordProperty) property).setPattern(pattern);
+        else if (property instanceof UUIDProperty)
+            ((UUIDProperty) property).setPattern(pattern);
+    }
+
+    private static List<?> getEnum(Property property) {
+        if (property instanceof StringProperty)
+            return ((StringProperty) property).getEnum();
+        if (property instanceof PasswordProperty)
+            return ((PasswordProperty) property).getEnum();
+        if (property instanceof UUIDProperty)
+            return ((UUIDProperty) property).getEnum();
+        if (property instanceof BinaryProperty)
+            return ((BinaryProperty) property).getEnum();
+        if (property instanceof BooleanProperty)
+            return ((BooleanProperty) property).getEnum();
+        if (property instanceof DateProperty)
+            return ((DateProperty) property).getEnum();
+        if (property instanceof DateTimeProperty)
+            return ((DateTimeProperty) property).getEnum();
+        if (property instanceof IntegerProperty)
+            return ((IntegerProperty) property).getEnum();
+        if (property instanceof LongProperty)
+            return ((LongProperty) property).getEnum();
+        if (property instanceof FloatProperty)
+            return ((FloatProperty) property).getEnum();
+        if (property instanceof DoubleProperty)
+            return ((DoubleProperty) property).getEnum();
+        return null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void setEnum(Property property, List values) {
+        if (property instanceof StringProperty)
+            ((StringProperty) property).setEnum(values);
+        else if (property instanceof PasswordProperty)
+            ((PasswordProperty) property).setEnum(values);
+        else if (property instanceof UUIDProperty)
+            ((UUIDProperty) property).setEnum(values);
+        else if (property instanceof BinaryProperty)
+            ((BinaryProperty) property).setEnum(values);
+        else if (property instanceof BooleanProperty)
+            ((BooleanProperty) property).setEnum(values);
+        else if (property instanceof DateProperty)
+            ((DateProperty) property).setEnum(values);
+        else if (property instanceof DateTimeProperty)
+            ((DateTimeProperty) property).setEnum(values);
+        else if (property instanceof IntegerProperty)
+            ((IntegerProperty) property).setEnum(values);
+        else if (property instanceof LongProperty)
+            ((LongProperty) property).setEnum(values);
+        else if (property instanceof FloatProperty)
+            ((FloatProperty) property).setEnum(values);
+        else if (property instanceof DoubleProperty)
+            ((DoubleProperty) property).setEnum(values);
+    }
+}
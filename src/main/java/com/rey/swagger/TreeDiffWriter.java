@@ -0,0 +1,51 @@
+package com.rey.swagger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+class TreeDiffWriter implements DiffWriter {
+
+    private final ObjectMapper mapper;
+    private final ObjectNode root;
+
+    private final Deque<ObjectNode> nodes = new ArrayDeque<>();
+    private final Deque<String> names = new ArrayDeque<>();
+
+    TreeDiffWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.root = mapper.createObjectNode();
+        nodes.push(root);
+    }
+
+    ObjectNode getRoot() {
+        return root;
+    }
+
+    @Override
+    public void begin(String name) {
+        nodes.push(mapper.createObjectNode());
+        names.push(name);
+    }
+
+    @Override
+    public void end() {
+        ObjectNode node = nodes.pop();
+        String name = names.pop();
+        if (node.size() > 0)
+            nodes.peek().set(name, node);
+    }
+
+    @Override
+    public void put(DiffKind kind, String name, Object expected, Object actual) {
+        nodes.peek().put(name, kind.render(expected, actual));
+    }
+
+    @Override
+    public void putNode(String name, JsonNode node) {
+        nodes.peek().set(name, node);
+    }
+}
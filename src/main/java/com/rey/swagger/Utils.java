@@ -1,19 +1,22 @@
 package com.rey.swagger;
 
-import java.util.List;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 class Utils {
 
-    static <T> T findNotContains(List<? extends T> expected, List<? extends T> list) {
-        if (expected == null || expected.isEmpty())
-            return null;
-
-        if (list == null)
-            return expected.get(0);
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        return expected.stream()
-                .filter(item -> !list.contains(item))
-                .findFirst()
-                .orElse(null);
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
     }
 }
@@ -0,0 +1,440 @@
+package com.rey.swagger;
+
+import org.junit.Test;
+import v2.io.swagger.models.ArrayModel;
+import v2.io.swagger.models.Model;
+import v2.io.swagger.models.ModelImpl;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Response;
+import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.AbstractSerializableParameter;
+import v2.io.swagger.models.parameters.BodyParameter;
+import v2.io.swagger.models.parameters.HeaderParameter;
+import v2.io.swagger.models.parameters.Parameter;
+import v2.io.swagger.models.parameters.QueryParameter;
+import v2.io.swagger.models.properties.AbstractProperty;
+import v2.io.swagger.models.properties.ArrayProperty;
+import v2.io.swagger.models.properties.BooleanProperty;
+import v2.io.swagger.models.properties.DateProperty;
+import v2.io.swagger.models.properties.DateTimeProperty;
+import v2.io.swagger.models.properties.DoubleProperty;
+import v2.io.swagger.models.properties.FloatProperty;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.LongProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.PasswordProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.properties.StringProperty;
+import v2.io.swagger.models.properties.UUIDProperty;
+import v2.io.swagger.parser.SwaggerParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StructuralHasherTest {
+
+    private static final String SPEC = "swagger: '2.0'\n" +
+            "paths:\n" +
+            "  /users:\n" +
+            "    get:\n" +
+            "      parameters:\n" +
+            "        - in: query\n" +
+            "          name: role\n" +
+            "          type: string\n" +
+            "          enum: [admin, user, guest]\n" +
+            "        - in: query\n" +
+            "          name: ids\n" +
+            "          type: array\n" +
+            "          items:\n" +
+            "            type: integer\n" +
+            "            format: int64\n" +
+            "      responses:\n" +
+            "        '200':\n" +
+            "          schema:\n" +
+            "            type: array\n" +
+            "            items:\n" +
+            "              $ref: '#/definitions/User'\n" +
+            "    post:\n" +
+            "      parameters:\n" +
+            "        - in: body\n" +
+            "          name: body\n" +
+            "          schema:\n" +
+            "            $ref: '#/definitions/User'\n" +
+            "      responses:\n" +
+            "        '201':\n" +
+            "          schema:\n" +
+            "            $ref: '#/definitions/User'\n" +
+            "  /groups:\n" +
+            "    get:\n" +
+            "      responses:\n" +
+            "        '200':\n" +
+            "          schema:\n" +
+            "            $ref: '#/definitions/Group'\n" +
+            "definitions:\n" +
+            "  User:\n" +
+            "    type: object\n" +
+            "    properties:\n" +
+            "      name:\n" +
+            "        type: string\n" +
+            "        pattern: '^[a-z]+$'\n" +
+            "      id:\n" +
+            "        type: string\n" +
+            "        format: uuid\n" +
+            "      role:\n" +
+            "        type: string\n" +
+            "        enum: [admin, user, guest]\n" +
+            "      age:\n" +
+            "        type: integer\n" +
+            "        format: int32\n" +
+            "      score:\n" +
+            "        type: number\n" +
+            "        format: double\n" +
+            "      active:\n" +
+            "        type: boolean\n" +
+            "      born:\n" +
+            "        type: string\n" +
+            "        format: date\n" +
+            "      address:\n" +
+            "        type: object\n" +
+            "        properties:\n" +
+            "          street:\n" +
+            "            type: string\n" +
+            "          zip:\n" +
+            "            type: string\n" +
+            "            pattern: '^[0-9]{5}$'\n" +
+            "      tags:\n" +
+            "        type: array\n" +
+            "        items:\n" +
+            "          type: string\n" +
+            "          enum: [a, b, c]\n" +
+            "  Group:\n" +
+            "    type: object\n" +
+            "    properties:\n" +
+            "      owner:\n" +
+            "        $ref: '#/definitions/User'\n" +
+            "      members:\n" +
+            "        type: array\n" +
+            "        items:\n" +
+            "          $ref: '#/definitions/User'\n";
+
+    @Test
+    public void testEqualTrees() {
+        Swagger first = new SwaggerParser().parse(SPEC);
+        Swagger second = new SwaggerParser().parse(SPEC);
+        StructuralHasher firstHasher = new ResolvedSwagger(first).getHasher();
+        StructuralHasher secondHasher = new ResolvedSwagger(second).getHasher();
+
+        for (String name : first.getDefinitions().keySet()) {
+            long hash = firstHasher.hashModel(first.getDefinitions().get(name));
+            assertNotEquals(name, StructuralHasher.UNHASHABLE, hash);
+            assertEquals(name, hash, secondHasher.hashModel(second.getDefinitions().get(name)));
+        }
+        first.getPaths().forEach((key, path) -> path.getOperationMap().forEach((method, operation) -> {
+            Operation other = second.getPath(key).getOperationMap().get(method);
+            for (int i = 0; i < operation.getParameters().size(); i++)
+                assertEquals(key + " " + method, firstHasher.hashParameter(operation.getParameters().get(i)),
+                        secondHasher.hashParameter(other.getParameters().get(i)));
+            operation.getResponses().forEach((status, response) ->
+                    assertEquals(key + " " + method + " " + status, firstHasher.hashResponse(response),
+                            secondHasher.hashResponse(other.getResponses().get(status))));
+        }));
+    }
+
+    @Test
+    public void testPropertyChanges() {
+        assertChanged("string format", () -> new StringProperty(), () -> format(new StringProperty(), "email"));
+        assertChanged("string pattern", () -> pattern("^a$"), () -> pattern("^b$"));
+        assertChanged("string enum", () -> enumOf("a", "b"), () -> enumOf("a", "c"));
+        assertChanged("string enum order", () -> enumOf("a", "b"), () -> enumOf("b", "a"));
+        assertChanged("string enum added", () -> enumOf("a"), () -> enumOf("a", "b"));
+        assertChanged("boolean enum", () -> new BooleanProperty()._enum(true), () -> new BooleanProperty()._enum(false));
+        assertChanged("date enum", () -> new DateProperty()._enum("2020-01-01"), () -> new DateProperty()._enum("2020-01-02"));
+        assertChanged("date-time enum", () -> new DateTimeProperty()._enum("2020-01-01T00:00:00Z"), () -> new DateTimeProperty()._enum("2020-01-02T00:00:00Z"));
+        assertChanged("double enum", () -> new DoubleProperty()._enum(1.0), () -> new DoubleProperty()._enum(2.0));
+        assertChanged("float enum", () -> new FloatProperty()._enum(1.0f), () -> new FloatProperty()._enum(2.0f));
+        assertChanged("integer enum", () -> new IntegerProperty()._enum(1), () -> new IntegerProperty()._enum(2));
+        assertChanged("long enum", () -> new LongProperty()._enum(1L), () -> new LongProperty()._enum(2L));
+        assertChanged("password pattern", () -> password("^a$"), () -> password("^b$"));
+        assertChanged("password enum", () -> new PasswordProperty()._enum("a"), () -> new PasswordProperty()._enum("b"));
+        assertChanged("uuid pattern", () -> uuid("^a$"), () -> uuid("^b$"));
+        assertChanged("uuid enum", () -> new UUIDProperty()._enum("a"), () -> new UUIDProperty()._enum("b"));
+        assertChanged("integer format", () -> new IntegerProperty(), () -> new LongProperty());
+        assertChanged("number format", () -> new DoubleProperty(), () -> new FloatProperty());
+        assertChanged("type", () -> new StringProperty(), () -> new BooleanProperty());
+        assertChanged("array items", () -> new ArrayProperty(new StringProperty()), () -> new ArrayProperty(new IntegerProperty()));
+        assertChanged("nested array items", () -> new ArrayProperty(new ArrayProperty(enumOf("a"))),
+                () -> new ArrayProperty(new ArrayProperty(enumOf("b"))));
+        assertChanged("object property type", () -> object("name", new StringProperty()), () -> object("name", new IntegerProperty()));
+        assertChanged("object property name", () -> object("name", new StringProperty()), () -> object("title", new StringProperty()));
+        assertChanged("object property added", () -> object("name", new StringProperty()),
+                () -> object("name", new StringProperty()).property("title", new StringProperty()));
+        assertChanged("nested object", () -> object("address", object("zip", pattern("^[0-9]$"))),
+                () -> object("address", object("zip", pattern("^[0-9]+$"))));
+        assertChanged("object and map", () -> new ObjectProperty(), () -> new ObjectProperty().property("name", new StringProperty()));
+    }
+
+    @Test
+    public void testReferenceChanges() {
+        Swagger swagger = new Swagger()
+                .model("A", new ModelImpl().type("object").property("name", new StringProperty()))
+                .model("B", new ModelImpl().type("object").property("name", new IntegerProperty()))
+                .model("C", new ModelImpl().type("object").property("name", new StringProperty()));
+        StructuralHasher hasher = new ResolvedSwagger(swagger).getHasher();
+
+        assertNotEquals(hasher.hashProperty(new RefProperty("A")), hasher.hashProperty(new RefProperty("B")));
+        assertEquals(hasher.hashProperty(new RefProperty("A")), hasher.hashProperty(new RefProperty("C")));
+        assertNotEquals(hasher.hashProperty(object("a", new RefProperty("A"))), hasher.hashProperty(object("a", new RefProperty("B"))));
+    }
+
+    @Test
+    public void testModelChanges() {
+        assertModelChanged("property type", () -> new ModelImpl().property("name", new StringProperty()),
+                () -> new ModelImpl().property("name", new IntegerProperty()));
+        assertModelChanged("property removed", () -> new ModelImpl().property("name", new StringProperty()).property("age", new IntegerProperty()),
+                () -> new ModelImpl().property("name", new StringProperty()));
+        assertModelChanged("property renamed", () -> new ModelImpl().property("name", new StringProperty()),
+                () -> new ModelImpl().property("title", new StringProperty()));
+        assertModelChanged("nested property", () -> new ModelImpl().property("tags", new ArrayProperty(enumOf("a"))),
+                () -> new ModelImpl().property("tags", new ArrayProperty(enumOf("b"))));
+        assertModelChanged("model kind", () -> new ModelImpl(), () -> new ArrayModel());
+    }
+
+    @Test
+    public void testParameterChanges() {
+        assertParameterChanged("name", () -> query("role", "string"), () -> query("kind", "string"));
+        assertParameterChanged("in", () -> query("role", "string"), () -> new HeaderParameter().name("role").type("string"));
+        assertParameterChanged("type", () -> query("role", "string"), () -> query("role", "integer"));
+        assertParameterChanged("format", () -> query("id", "integer").format("int32"), () -> query("id", "integer").format("int64"));
+        assertParameterChanged("pattern", () -> pattern(query("role", "string"), "^a$"), () -> pattern(query("role", "string"), "^b$"));
+        assertParameterChanged("enum", () -> query("role", "string")._enum(Arrays.asList("a", "b")),
+                () -> query("role", "string")._enum(Arrays.asList("a", "c")));
+        assertParameterChanged("items", () -> query("ids", "array").items(new IntegerProperty()),
+                () -> query("ids", "array").items(new LongProperty()));
+        assertParameterChanged("body schema", () -> new BodyParameter().name("body").schema(new ModelImpl().property("name", new StringProperty())),
+                () -> new BodyParameter().name("body").schema(new ModelImpl().property("name", new IntegerProperty())));
+
+        StructuralHasher hasher = new ResolvedSwagger(new Swagger()).getHasher();
+        assertNotEquals(hasher.hashResponse(new Response().schema(object("name", new StringProperty()))),
+                new ResolvedSwagger(new Swagger()).getHasher().hashResponse(new Response().schema(object("name", new IntegerProperty()))));
+    }
+
+    @Test
+    public void testUnhashable() {
+        Swagger swagger = new SwaggerParser().parse(SPEC.replace("      tags:\n", "      friends:\n        type: array\n        items:\n          $ref: '#/definitions/User'\n      tags:\n"));
+        StructuralHasher hasher = new ResolvedSwagger(swagger).getHasher();
+        assertEquals(StructuralHasher.UNHASHABLE, hasher.hashModel(swagger.getDefinitions().get("User")));
+        assertEquals(StructuralHasher.UNHASHABLE, hasher.hashModel(swagger.getDefinitions().get("Group")));
+        assertNotEquals(StructuralHasher.UNHASHABLE, hasher.hashProperty(swagger.getDefinitions().get("User").getProperties().get("address")));
+
+        assertNotEquals(StructuralHasher.UNHASHABLE, hash(nested(StructuralHasher.MAX_DEPTH)));
+        assertEquals(StructuralHasher.UNHASHABLE, hash(nested(StructuralHasher.MAX_DEPTH + 1)));
+        assertEquals(StructuralHasher.UNHASHABLE, hash(nested(StructuralHasher.MAX_DEPTH * 4)));
+    }
+
+    @Test
+    public void testMissingReference() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          description: ok\n" +
+                "          schema:\n" +
+                "            type: object\n" +
+                "            properties:\n" +
+                "              name:\n" +
+                "                type: string\n" +
+                "%s";
+        Swagger expected = new SwaggerParser().parse(String.format(spec, ""));
+        Swagger actual = new SwaggerParser().parse(String.format(spec, "              extra:\n                $ref: '#/definitions/Gone'\n"));
+
+        Response response = actual.getPath("/users").getGet().getResponses().get("200");
+        assertEquals(StructuralHasher.UNHASHABLE, new ResolvedSwagger(actual).getHasher().hashResponse(response));
+        assertEquals("{}", compare(expected, actual, false));
+        assertEquals("{}", compare(expected, actual, true));
+    }
+
+    /**
+     * Mutates single attributes of a spec at random and checks that skipping identical subtrees never changes
+     * the report.
+     */
+    @Test
+    public void testShortcutKeepsReports() throws Exception {
+        Swagger expected = new SwaggerParser().parse(SPEC);
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            Swagger actual = new SwaggerParser().parse(SPEC);
+            for (int mutations = 1 + random.nextInt(3); mutations > 0; mutations--)
+                mutate(actual, random);
+
+            assertEquals("seed " + seed, compare(expected, actual, false), compare(expected, actual, true));
+            assertEquals("seed " + seed, compare(actual, expected, false), compare(actual, expected, true));
+        }
+    }
+
+    private static String compare(Swagger expected, Swagger actual, boolean structuralHashing) throws Exception {
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+        swaggerComparator.setStructuralHashing(structuralHashing);
+        swaggerComparator.setReportExtraEnumValues(true);
+        return swaggerComparator.compare();
+    }
+
+    private static void mutate(Swagger swagger, Random random) {
+        List<Map<String, Property>> owners = new ArrayList<>();
+        swagger.getDefinitions().values().forEach(model -> collect(model.getProperties(), owners));
+        List<AbstractSerializableParameter<?>> parameters = new ArrayList<>();
+        swagger.getPaths().values().forEach(path -> path.getOperations().forEach(operation -> {
+            if (operation.getParameters() != null)
+                for (Parameter parameter : operation.getParameters())
+                    if (parameter instanceof AbstractSerializableParameter)
+                        parameters.add((AbstractSerializableParameter<?>) parameter);
+        }));
+
+        if (random.nextInt(4) == 0) {
+            AbstractSerializableParameter<?> parameter = parameters.get(random.nextInt(parameters.size()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    parameter.setType("integer");
+                    break;
+                case 1:
+                    parameter.setPattern("^x$");
+                    break;
+                default:
+                    parameter.setEnum(Arrays.asList("admin", "other"));
+            }
+            return;
+        }
+
+        Map<String, Property> owner = owners.get(random.nextInt(owners.size()));
+        List<String> names = new ArrayList<>(owner.keySet());
+        String name = names.get(random.nextInt(names.size()));
+        Property property = owner.get(name);
+        switch (random.nextInt(6)) {
+            case 0:
+                owner.remove(name);
+                break;
+            case 1:
+                owner.put(name, new IntegerProperty());
+                break;
+            case 2:
+                owner.put(name + "_new", new StringProperty());
+                break;
+            case 3:
+                if (property instanceof StringProperty)
+                    ((StringProperty) property).setPattern("^changed$");
+                else
+                    owner.put(name, format(new StringProperty(), "changed"));
+                break;
+            case 4:
+                if (property instanceof StringProperty)
+                    ((StringProperty) property).setEnum(Arrays.asList("admin", "root"));
+                else
+                    owner.put(name, new ArrayProperty(new StringProperty()));
+                break;
+            default:
+                owner.put(name, new RefProperty(random.nextBoolean() ? "User" : "Group"));
+        }
+    }
+
+    private static void collect(Map<String, Property> properties, List<Map<String, Property>> owners) {
+        if (properties == null || properties.isEmpty())
+            return;
+        owners.add(properties);
+        for (Property property : properties.values()) {
+            if (property instanceof ObjectProperty)
+                collect(((ObjectProperty) property).getProperties(), owners);
+            if (property instanceof ArrayProperty && ((ArrayProperty) property).getItems() instanceof ObjectProperty)
+                collect(((ObjectProperty) ((ArrayProperty) property).getItems()).getProperties(), owners);
+        }
+    }
+
+    private static void assertChanged(String change, Supplier<Property> before, Supplier<Property> after) {
+        assertEquals(change, hash(before.get()), hash(before.get()));
+        assertNotEquals(change, StructuralHasher.UNHASHABLE, hash(before.get()));
+        assertNotEquals(change, hash(before.get()), hash(after.get()));
+    }
+
+    private static void assertModelChanged(String change, Supplier<Model> before, Supplier<Model> after) {
+        assertEquals(change, hashModel(before.get()), hashModel(before.get()));
+        assertNotEquals(change, hashModel(before.get()), hashModel(after.get()));
+    }
+
+    private static void assertParameterChanged(String change, Supplier<Parameter> before, Supplier<Parameter> after) {
+        assertEquals(change, hashParameter(before.get()), hashParameter(before.get()));
+        assertNotEquals(change, hashParameter(before.get()), hashParameter(after.get()));
+    }
+
+    private static long hash(Property property) {
+        return new ResolvedSwagger(new Swagger()).getHasher().hashProperty(property);
+    }
+
+    private static long hashModel(Model model) {
+        return new ResolvedSwagger(new Swagger()).getHasher().hashModel(model);
+    }
+
+    private static long hashParameter(Parameter parameter) {
+        return new ResolvedSwagger(new Swagger()).getHasher().hashParameter(parameter);
+    }
+
+    private static StringProperty pattern(String pattern) {
+        return new StringProperty().pattern(pattern);
+    }
+
+    private static StringProperty enumOf(String... values) {
+        StringProperty property = new StringProperty();
+        property.setEnum(Arrays.asList(values));
+        return property;
+    }
+
+    private static Property format(AbstractProperty property, String format) {
+        property.setFormat(format);
+        return property;
+    }
+
+    private static QueryParameter pattern(QueryParameter parameter, String pattern) {
+        parameter.setPattern(pattern);
+        return parameter;
+    }
+
+    private static PasswordProperty password(String pattern) {
+        PasswordProperty property = new PasswordProperty();
+        property.setPattern(pattern);
+        return property;
+    }
+
+    private static UUIDProperty uuid(String pattern) {
+        UUIDProperty property = new UUIDProperty();
+        property.setPattern(pattern);
+        return property;
+    }
+
+    private static ObjectProperty object(String name, Property property) {
+        Map<String, Property> properties = new LinkedHashMap<>();
+        properties.put(name, property);
+        return new ObjectProperty(properties);
+    }
+
+    private static QueryParameter query(String name, String type) {
+        return new QueryParameter().name(name).type(type);
+    }
+
+    /**
+     * Returns a chain of the given number of nested properties.
+     */
+    private static Property nested(int depth) {
+        Property property = new StringProperty();
+        for (int i = 1; i < depth; i++)
+            property = object("next", property);
+        return property;
+    }
+}
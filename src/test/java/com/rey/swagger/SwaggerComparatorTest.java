@@ -1,13 +1,57 @@
 package com.rey.swagger;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import org.junit.Test;
+import v2.io.swagger.models.Operation;
+import v2.io.swagger.models.Scheme;
 import v2.io.swagger.models.Swagger;
+import v2.io.swagger.models.parameters.QueryParameter;
+import v2.io.swagger.models.properties.IntegerProperty;
+import v2.io.swagger.models.properties.ObjectProperty;
+import v2.io.swagger.models.properties.Property;
+import v2.io.swagger.models.properties.RefProperty;
+import v2.io.swagger.models.properties.StringProperty;
 import v2.io.swagger.parser.SwaggerParser;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SwaggerComparatorTest {
 
@@ -22,6 +66,875 @@ public class SwaggerComparatorTest {
         assertEquals("{}", swaggerComparator.compare());
     }
 
+    @Test
+    public void testReferenceCache() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final ResolvedSwagger expected = new ResolvedSwagger(parser.read("expected.yaml"));
+        final ResolvedSwagger actual = new ResolvedSwagger(parser.read("actual.yaml"));
+        new SwaggerComparator(expected, actual).compare();
+        long misses = expected.getMissCount();
+
+        assertEquals("{}", new SwaggerComparator(expected, actual).compare());
+        assertEquals(misses, expected.getMissCount());
+        assertTrue(expected.getHitCount() > 0);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final Swagger expected = parser.read("expected.yaml");
+        final Swagger actual = parser.read("expected.yaml");
+        actual.getPaths().get("/path/entities").setGet(null);
+        actual.getDefinitions().get("errorResponse").getProperties().remove("code");
+
+        String sequential = new SwaggerComparator(expected, actual).compare();
+        assertNotEquals("{}", sequential);
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+        swaggerComparator.setExecutor(ForkJoinPool.commonPool());
+        assertEquals(sequential, swaggerComparator.compare());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SwaggerComparator(expected, actual).compare(out);
+        assertEquals(sequential, out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testRenamedPathVariable() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final Swagger expected = parser.read("expected.yaml");
+        final Swagger actual = parser.read("expected.yaml");
+        expected.setPaths(Collections.singletonMap("/entities/{id}", expected.getPath("/path/entities")));
+        actual.setPaths(Collections.singletonMap("/entities/{entityId}", actual.getPath("/path/entities")));
+
+        assertEquals("{\"/entities/{id}\":{\"matchedPath\":\"/entities/{entityId}\"}}", new SwaggerComparator(expected, actual).compare());
+    }
+
+    @Test
+    public void testMissingEnumValues() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final Swagger expected = parser.read("expected.yaml");
+        final Swagger actual = parser.read("expected.yaml");
+        ((StringProperty) expected.getDefinitions().get("entityRequest").getProperties().get("string_field")).setEnum(Arrays.asList("a", "b", "c", "d"));
+        ((StringProperty) actual.getDefinitions().get("entityRequest").getProperties().get("string_field")).setEnum(Arrays.asList("e", "c", "a"));
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+        assertEquals("{\"/path/entities\":{\"POST\":{\"parameters\":{\"body\":{\"body\":{\"string_field\":{\"enum\":\"Expected contains 'b', 'd' but not found\"}}}}}}}", swaggerComparator.compare());
+
+        swaggerComparator.setReportExtraEnumValues(true);
+        assertEquals("{\"/path/entities\":{\"POST\":{\"parameters\":{\"body\":{\"body\":{\"string_field\":{\"enum\":\"Expected contains 'b', 'd' but not found; actual contains unexpected 'e'\"}}}}}}}", swaggerComparator.compare());
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final Swagger expected = parser.read("actual.yaml");
+        final Swagger actual = parser.read("expected.yaml");
+        String report = new SwaggerComparator(expected, actual).compare();
+
+        File file = File.createTempFile("fingerprints", ".json");
+        file.delete();
+        for (int i = 0; i < 2; i++) {
+            FingerprintCache cache = FingerprintCache.load(file);
+            SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+            swaggerComparator.setFingerprintCache(cache);
+            assertEquals(report, swaggerComparator.compare());
+            assertEquals(i, cache.getReusedCount());
+            cache.save(file);
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        final Swagger expected = parser.read("actual.yaml");
+        final Swagger actual = parser.read("expected.yaml");
+        expected.getPath("/path/entities").getPost().addTag("entities");
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+        swaggerComparator.setScope(new ComparisonScope().paths(Collections.singletonList("/other/**")));
+        assertEquals("{}", swaggerComparator.compare());
+
+        swaggerComparator.setScope(new ComparisonScope().paths(Collections.singletonList("/path/*")).tags(Collections.singletonList("entities")));
+        assertEquals("{\"/path/entities\":{\"POST\":{\"responses\":{\"200\":{\"data\":{\"enum_field\":\"Not found\",\"boolean_field\":\"Not found\"}}}}}}", swaggerComparator.compare());
+    }
+
+    @Test
+    public void testScopeGlobs() {
+        ComparisonScope scope = new ComparisonScope().paths(Collections.singletonList("/billing/**"));
+        assertTrue(scope.includes("/billing"));
+        assertTrue(scope.includes("/billing/"));
+        assertTrue(scope.includes("/billing/invoices/{id}"));
+        assertFalse(scope.includes("/billingx"));
+        assertFalse(scope.includes("/other/billing"));
+
+        scope = new ComparisonScope().paths(Arrays.asList("/users/*", "/*/orders/**", "/items/?"));
+        assertTrue(scope.includes("/users/{id}"));
+        assertFalse(scope.includes("/users"));
+        assertFalse(scope.includes("/users/{id}/orders"));
+        assertTrue(scope.includes("/users/orders"));
+        assertTrue(scope.includes("/shops/orders/{id}/lines"));
+        assertTrue(scope.includes("/items/1"));
+        assertFalse(scope.includes("/items/12"));
+    }
+
+    @Test
+    public void testDanglingParameterReference() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      parameters:\n" +
+                "        - $ref: '#/parameters/limit'\n" +
+                "%s" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          description: ok\n" +
+                "parameters:\n" +
+                "  limit:\n" +
+                "    in: query\n" +
+                "    name: limit\n" +
+                "    type: string\n" +
+                "    format: %s\n";
+        SwaggerParser parser = new SwaggerParser();
+        Swagger expected = parser.parse(String.format(spec, "", "int32"));
+        Swagger actual = parser.parse(String.format(spec, "        - $ref: '#/parameters/gone'\n", "int64"));
+
+        ResolvedSwagger resolved = new ResolvedSwagger(actual);
+        Operation operation = actual.getPath("/users").getGet();
+        assertEquals("int64", ((QueryParameter) resolved.findParameter(operation, "query", "limit")).getFormat());
+        assertEquals(null, resolved.findParameter(operation, "query", "gone"));
+
+        assertEquals("{\"/users\":{\"GET\":{\"parameters\":{\"query\":{\"limit\":{\"format\":\"Expected 'int32' but actual is 'int64'\"}}}}}}",
+                new SwaggerComparator(expected, actual).compare());
+    }
+
+    @Test
+    public void testFirstDifference() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        assertTrue(new SwaggerComparator(parser.read("expected.yaml"), parser.read("actual.yaml")).isCompatible());
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml"));
+        assertFalse(swaggerComparator.isCompatible());
+        assertEquals("/path/entities > GET > responses > 200 > data > items > enum_field", swaggerComparator.findFirstDifference());
+    }
+
+    @Test
+    public void testDiffConsumer() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        List<Diff> diffs = new ArrayList<>();
+        new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare(diffs::add);
+
+        assertEquals(4, diffs.size());
+        assertEquals(DiffKind.NOT_FOUND, diffs.get(0).getKind());
+        assertEquals("/path/entities > GET > responses > 200 > data > items > enum_field", diffs.get(0).getLocation().toString());
+        assertEquals("Not found", diffs.get(0).getMessage());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        File file = File.createTempFile("expected", ".snapshot");
+        SwaggerSnapshot.write(parser.read("actual.yaml"), file);
+        assertTrue(SwaggerSnapshot.isSnapshot(file));
+
+        Swagger expected = SwaggerSnapshot.read(file);
+        Swagger actual = parser.read("expected.yaml");
+        assertEquals(new SwaggerComparator(parser.read("actual.yaml"), actual).compare(), new SwaggerComparator(expected, actual).compare());
+        assertEquals("{}", new SwaggerComparator(actual, expected).compare());
+
+        Swagger spec = parser.read("actual.yaml");
+        spec.setHost("api.example.com");
+        spec.setBasePath("/api");
+        spec.setSchemes(Arrays.asList(Scheme.HTTPS, Scheme.HTTP));
+        spec.setConsumes(Collections.singletonList("application/json"));
+        spec.setProduces(Arrays.asList("application/json", "text/plain"));
+        SwaggerSnapshot.write(spec, file);
+        Swagger snapshot = SwaggerSnapshot.read(file);
+        assertEquals("api.example.com", snapshot.getHost());
+        assertEquals("/api", snapshot.getBasePath());
+        assertEquals(Arrays.asList(Scheme.HTTPS, Scheme.HTTP), snapshot.getSchemes());
+        assertEquals(Collections.singletonList("application/json"), snapshot.getConsumes());
+        assertEquals(Arrays.asList("application/json", "text/plain"), snapshot.getProduces());
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        content[7] = 1;
+        Files.write(file.toPath(), content);
+        try {
+            SwaggerSnapshot.read(file);
+            fail("Snapshots of version 1 must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unsupported snapshot version"));
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+        String expected = resource("expected.yaml").toString();
+        String actual = resource("actual.yaml").toString();
+        String report = new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare();
+
+        File snapshot = File.createTempFile("expected", ".snapshot");
+        SwaggerSnapshot.write(parser.read("expected.yaml"), snapshot);
+        File broken = File.createTempFile("broken", ".yaml");
+        Files.write(broken.toPath(), "swagger: '2.0'\npaths: [\n".getBytes(StandardCharsets.UTF_8));
+        File manifest = File.createTempFile("manifest", ".txt");
+        Files.write(manifest.toPath(), ("# candidates\n\n  " + snapshot + "  \n" + broken + "\n" + actual + "\n").getBytes(StandardCharsets.UTF_8));
+
+        try {
+            List<String> candidates = BatchComparator.readManifest(manifest.toPath());
+            assertEquals(Arrays.asList(snapshot.toString(), broken.toString(), actual), candidates);
+            candidates.add(0, expected);
+            candidates.add("missing.yaml");
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new BatchComparator(parser.read("actual.yaml"), executor).compare(candidates, out);
+                JsonNode reports = new ObjectMapper().readTree(out.toByteArray());
+
+                assertEquals(candidates, Lists.newArrayList(reports.fieldNames()));
+                assertEquals(new ObjectMapper().readTree(report), reports.get(expected));
+                assertEquals(reports.get(expected), reports.get(snapshot.toString()));
+                assertTrue(reports.get(broken.toString()).isTextual());
+                assertEquals("{}", reports.get(actual).toString());
+                assertEquals("File not found: missing.yaml", reports.get("missing.yaml").asText());
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            snapshot.delete();
+            broken.delete();
+            manifest.delete();
+        }
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+        String report = new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare();
+        String expected = resource("actual.yaml").toString();
+        String actual = resource("expected.yaml").toString();
+        String actualSpec = new String(Files.readAllBytes(resource("expected.yaml")), StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CompareServer server = new CompareServer(0, 2, executor);
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getPort() + "/compare";
+            assertEquals("200 " + report, request("GET", url + "?expected=" + URLEncoder.encode(expected, "UTF-8") + "&actual=" + URLEncoder.encode(actual, "UTF-8"), null));
+
+            ObjectMapper mapper = new ObjectMapper();
+            String body = mapper.createObjectNode().put("expected", expected).put("actualSpec", actualSpec).toString();
+            assertEquals("200 " + report, request("POST", url, body));
+            assertEquals("200 " + report, request("POST", url, body));
+
+            assertEquals("400 {\"error\":\"Missing actual spec\"}", request("POST", url, mapper.createObjectNode().put("expected", expected).toString()));
+            assertEquals("400 {\"error\":\"File not found: missing.yaml\"}", request("GET", url + "?expected=missing.yaml&actual=missing.yaml", null));
+            assertEquals("400 {\"error\":\"Unable to parse uploaded spec\"}", request("POST", url, mapper.createObjectNode().put("expected", expected).put("actualSpec", "- not a spec").toString()));
+            assertEquals("405 {\"error\":\"Method not allowed\"}", request("PUT", url, ""));
+        } finally {
+            server.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSpecCache() throws Exception {
+        String expected = resource("expected.yaml").toString();
+        String actual = resource("actual.yaml").toString();
+        String content = new String(Files.readAllBytes(resource("expected.yaml")), StandardCharsets.UTF_8);
+
+        SpecCache cache = new SpecCache(2);
+        ResolvedSwagger first = cache.getFile(expected);
+        assertSame(first, cache.getFile(expected));
+        assertSame(cache.getContent(content), cache.getContent(content));
+        assertEquals(2, cache.size());
+
+        cache.getFile(actual);
+        assertEquals(2, cache.size());
+        assertNotSame(first, cache.getFile(expected));
+
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: './models.yaml#/User'\n";
+        List<String> specs = new ArrayList<>();
+        for (String type : Arrays.asList("string", "integer")) {
+            Path directory = Files.createTempDirectory("specs");
+            Files.write(directory.resolve("api.yaml"), spec.getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("models.yaml"), ("User:\n  type: object\n  properties:\n    name:\n      type: " + type + "\n").getBytes(StandardCharsets.UTF_8));
+            specs.add(directory.resolve("api.yaml").toString());
+        }
+        ResolvedSwagger strings = cache.getFile(specs.get(0));
+        ResolvedSwagger integers = cache.getFile(specs.get(1));
+        assertNotSame(strings, integers);
+        assertEquals("{\"/users\":{\"GET\":{\"responses\":{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}}}}",
+                new SwaggerComparator(strings, integers).compare());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+        Swagger expected = parser.read("expected.yaml");
+        Swagger actual = parser.read("actual.yaml");
+        String report = new SwaggerComparator(expected, actual).compare();
+
+        ComparisonMetrics metrics = new ComparisonMetrics().register("test");
+        try {
+            ObjectName name = new ObjectName("com.rey.swagger:type=ComparisonMetrics,name=\"test\"");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(name));
+            assertEquals(0L, server.getAttribute(name, "Paths"));
+
+            SwaggerComparator swaggerComparator = new SwaggerComparator(expected, actual);
+            swaggerComparator.setMetrics(metrics, false);
+            assertEquals(report, swaggerComparator.compare());
+
+            assertEquals(1, metrics.getPaths());
+            assertEquals(2, metrics.getOperations());
+            assertEquals(1, metrics.getParameters());
+            assertTrue(metrics.getProperties() > 0);
+            assertTrue(metrics.getDereferences() > 0);
+            assertTrue(metrics.getMaxDepth() > 0);
+            assertEquals(1, metrics.getSlowestPaths().length);
+            assertTrue(metrics.getSlowestPaths()[0].startsWith("/path/entities: "));
+            assertEquals(1L, server.getAttribute(name, "Paths"));
+            assertEquals(metrics.getProperties(), server.getAttribute(name, "Properties"));
+
+            swaggerComparator.setMetrics(metrics);
+            JsonNode withMetrics = new ObjectMapper().readTree(swaggerComparator.compare());
+            assertEquals(2, withMetrics.get("$metrics").get("paths").asLong());
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, metrics.getPaths());
+            assertEquals(0, metrics.getSlowestPaths().length);
+
+            metrics.unregister();
+            assertFalse(server.isRegistered(name));
+            metrics.register("test");
+            assertTrue(server.isRegistered(name));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void testMetricsDepthAfterFailure() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            type: object\n" +
+                "            properties:\n" +
+                "              address:\n" +
+                "                type: object\n" +
+                "                properties:\n" +
+                "                  city:\n" +
+                "%s";
+        SwaggerParser parser = new SwaggerParser();
+        Swagger expected = parser.parse(String.format(spec, "                    type: string\n"));
+        Swagger broken = parser.parse(String.format(spec, "                    $ref: '#/definitions/Gone'\n"));
+
+        ComparisonMetrics metrics = new ComparisonMetrics();
+        SwaggerComparator swaggerComparator = new SwaggerComparator(expected, expected);
+        swaggerComparator.setStructuralHashing(false);
+        swaggerComparator.setMetrics(metrics, false);
+        swaggerComparator.compare();
+        int maxDepth = metrics.getMaxDepth();
+        assertEquals(3, maxDepth);
+
+        SwaggerComparator failing = new SwaggerComparator(expected, broken);
+        failing.setMetrics(metrics, false);
+        try {
+            failing.compare();
+            fail("The dangling reference must fail the comparison");
+        } catch (ReferenceNotFoundException e) {
+            // expected
+        }
+
+        metrics.reset();
+        swaggerComparator.compare();
+        assertEquals(maxDepth, metrics.getMaxDepth());
+    }
+
+    @Test
+    public void testMatrix() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        CompatibilityMatrix matrix = new CompatibilityMatrix(ForkJoinPool.commonPool());
+        matrix.add("v1", parser.read("expected.yaml"));
+        matrix.add("v2", parser.read("actual.yaml"));
+
+        boolean[][] compatible = matrix.compute();
+        assertTrue(compatible[0][1]);
+        assertFalse(compatible[1][0]);
+        assertEquals(new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare(), matrix.compare("v2", "v1"));
+
+        Swagger broken = parser.read("expected.yaml");
+        broken.getDefinitions().get("errorResponse").getProperties().put("code", new RefProperty("#/definitions/Gone"));
+        matrix.add("v3", broken);
+        compatible = matrix.compute();
+        assertTrue(compatible[0][1]);
+        assertFalse(compatible[1][0]);
+        assertFalse(compatible[0][2]);
+        assertTrue(compatible[2][2]);
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        SwaggerParser parser = new SwaggerParser();
+
+        ComparisonPlan plan = ComparisonPlan.compile(parser.read("actual.yaml"));
+        ResolvedSwagger expected = new ResolvedSwagger(parser.read("expected.yaml"));
+        ResolvedSwagger actual = new ResolvedSwagger(parser.read("actual.yaml"));
+        assertEquals(new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare(),
+                new SwaggerComparator(plan, expected).compare());
+        assertEquals("{}", new SwaggerComparator(plan, actual).compare());
+
+        SpecCache cache = new SpecCache(2);
+        ResolvedSwagger cached = cache.getContent(new String(Files.readAllBytes(resource("expected.yaml")), StandardCharsets.UTF_8));
+        assertSame(cached.getPlan(), cache.getContent(new String(Files.readAllBytes(resource("expected.yaml")), StandardCharsets.UTF_8)).getPlan());
+    }
+
+    @Test
+    public void testRecursiveDefinition() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /nodes:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: '#/definitions/Node'\n" +
+                "definitions:\n" +
+                "  Node:\n" +
+                "    type: object\n" +
+                "    properties:\n" +
+                "      name:\n" +
+                "        type: %s\n" +
+                "      children:\n" +
+                "        type: array\n" +
+                "        items:\n" +
+                "          $ref: '#/definitions/Node'\n";
+        SwaggerParser parser = new SwaggerParser();
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(parser.parse(String.format(spec, "string")), parser.parse(String.format(spec, "integer")));
+        assertEquals("{\"/nodes\":{\"GET\":{\"responses\":{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}}}}", swaggerComparator.compare());
+    }
+
+    @Test
+    public void testPayloadValidator() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users/{id}:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: '#/definitions/User'\n" +
+                "definitions:\n" +
+                "  User:\n" +
+                "    type: object\n" +
+                "    properties:\n" +
+                "      code:\n" +
+                "        type: string\n" +
+                "        pattern: '^[A-Z]+$'\n" +
+                "      role:\n" +
+                "        type: string\n" +
+                "        enum: [admin, user]\n" +
+                "      id:\n" +
+                "        type: string\n" +
+                "        format: uuid\n";
+        String records = "{\"method\":\"GET\",\"path\":\"/users/1\",\"status\":200,\"response\":{\"code\":\"AB\",\"role\":\"user\"}}\n" +
+                "{\"response\":{\"code\":\"ab\",\"role\":\"root\",\"id\":\"1\"},\"method\":\"GET\",\"path\":\"/users/2\",\"status\":\"200\"}\n";
+
+        PayloadValidator validator = new PayloadValidator(ComparisonPlan.compile(new SwaggerParser().parse(spec)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, validator.validate(new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8)), out));
+        assertEquals("{\"2\":{\"200\":{\"code\":{\"pattern\":\"Expected '^[A-Z]+$' but actual is 'ab'\"}," +
+                "\"role\":{\"enum\":\"Actual contains unexpected 'root'\"},\"id\":{\"format\":\"Expected 'uuid' but actual is '1'\"}}}}",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("{\"DELETE /users/1\":\"Not found\"}", validator.validateRequest("DELETE", "/users/1", new ByteArrayInputStream(new byte[0])));
+
+        String array = "[" + String.join(",", records.trim().split("\n")) + "," + records.trim().split("\n")[1] + "]";
+        out.reset();
+        assertEquals(2, validator.validate(json(array), out));
+        String report = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(report, report.startsWith("{\"2\":{\"200\":{\"code\"") && report.contains("},\"3\":{\"200\":{\"code\""));
+
+        File valid = File.createTempFile("valid", ".ndjson");
+        File invalid = File.createTempFile("invalid", ".ndjson");
+        Files.write(valid.toPath(), records.split("\n")[0].getBytes(StandardCharsets.UTF_8));
+        Files.write(invalid.toPath(), records.getBytes(StandardCharsets.UTF_8));
+        out.reset();
+        assertEquals(1, validator.validate(Arrays.asList(valid, invalid), out));
+        JsonNode files = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals(Collections.singletonList(invalid.getPath()), Lists.newArrayList(files.fieldNames()));
+        assertTrue(files.get(invalid.getPath()).has("2"));
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users/{id}:\n" +
+                "    get:\n" +
+                "      tags: [users]\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            type: object\n" +
+                "            properties:\n" +
+                "              name:\n" +
+                "                type: %s\n" +
+                "              ids:\n" +
+                "                type: array\n" +
+                "                items:\n" +
+                "                  type: %s\n" +
+                "  /users:\n" +
+                "    post:\n" +
+                "      tags: [users, admin]\n" +
+                "      responses:\n" +
+                "        '201':\n" +
+                "          description: Created\n";
+        String actual = String.format(spec, "integer", "string").replace("'201'", "'200'");
+        SwaggerParser parser = new SwaggerParser();
+
+        SwaggerComparator swaggerComparator = new SwaggerComparator(parser.parse(String.format(spec, "string", "integer")), parser.parse(actual));
+        assertEquals("{\"total\":3,\"kinds\":{\"notFound\":1,\"type\":2}," +
+                "\"paths\":{\"/users\":{\"total\":3,\"notFound\":1,\"type\":2}}," +
+                "\"tags\":{\"users\":{\"total\":3,\"notFound\":1,\"type\":2},\"admin\":{\"total\":1,\"notFound\":1}}," +
+                "\"sample\":[{\"location\":\"/users/{id} > GET > responses > 200 > name > type\",\"message\":\"Expected 'string' but actual is 'integer'\"}]}",
+                swaggerComparator.summarize(1, 1));
+    }
+
+    @Test
+    public void testPayloadValidatorBasePath() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "basePath: /v1\n" +
+                "paths:\n" +
+                "  /users/{id}:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            type: object\n" +
+                "            properties:\n" +
+                "              name:\n" +
+                "                type: string\n";
+
+        PayloadValidator validator = new PayloadValidator(ComparisonPlan.compile(new SwaggerParser().parse(spec)));
+        assertEquals("{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}",
+                validator.validateResponse("GET", "/v1/users/42?fields=name", "200", json("{\"name\":1}")));
+        assertEquals("{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}",
+                validator.validateResponse("GET", "/users/42", "200", json("{\"name\":1}")));
+        assertEquals("{\"GET /v10/users/42\":\"Not found\"}", validator.validateResponse("GET", "/v10/users/42", "200", json("{}")));
+
+        File snapshot = File.createTempFile("spec", ".snapshot");
+        try {
+            SwaggerSnapshot.write(new SwaggerParser().parse(spec), snapshot);
+            PayloadValidator snapshotValidator = new PayloadValidator(ComparisonPlan.compile(SwaggerSnapshot.load(snapshot.getPath())));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1, snapshotValidator.validate(json("{\"method\":\"GET\",\"path\":\"/v1/users/1\",\"status\":200,\"response\":{\"name\":1}}"), out));
+            assertEquals("{\"1\":{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}}", out.toString("UTF-8"));
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    @Test
+    public void testPayloadValidatorArrayBody() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    post:\n" +
+                "      parameters:\n" +
+                "        - in: body\n" +
+                "          name: users\n" +
+                "          schema:\n" +
+                "            type: array\n" +
+                "            items:\n" +
+                "              $ref: '#/definitions/User'\n" +
+                "      responses:\n" +
+                "        '204':\n" +
+                "          description: Created\n" +
+                "definitions:\n" +
+                "  User:\n" +
+                "    type: object\n" +
+                "    properties:\n" +
+                "      role:\n" +
+                "        type: string\n" +
+                "        enum: [admin, user]\n";
+
+        PayloadValidator validator = new PayloadValidator(ComparisonPlan.compile(new SwaggerParser().parse(spec)));
+        assertEquals("{}", validator.validateRequest("POST", "/users", json("[{\"role\":\"admin\"},{\"role\":\"user\"}]")));
+        assertEquals("{\"request\":{\"items\":{\"1\":{\"role\":{\"enum\":\"Actual contains unexpected 'root'\"}}}}}",
+                validator.validateRequest("POST", "/users", json("[{\"role\":\"admin\"},{\"role\":\"root\"}]")));
+        assertEquals("{\"request\":{\"type\":\"Expected 'array' but actual is 'object'\"}}",
+                validator.validateRequest("POST", "/users", json("{\"role\":\"admin\"}")));
+    }
+
+    @Test
+    public void testDeepDefinition() throws Exception {
+        int depth = 5000;
+        StringBuilder spec = new StringBuilder("swagger: '2.0'\npaths:\n  /deep:\n    get:\n      responses:\n        '200':\n          schema:\n            $ref: '#/definitions/D0'\ndefinitions:\n");
+        for (int i = 0; i < depth; i++)
+            spec.append("  D").append(i).append(":\n    type: object\n    properties:\n      next:\n        $ref: '#/definitions/D").append(i + 1).append("'\n");
+        SwaggerParser parser = new SwaggerParser();
+
+        Swagger expected = parser.parse(spec + "  D" + depth + ":\n    type: object\n    properties:\n      value:\n        type: string\n");
+        Swagger actual = parser.parse(spec + "  D" + depth + ":\n    type: object\n    properties:\n      value:\n        type: integer\n");
+        List<Diff> diffs = new ArrayList<>();
+        new SwaggerComparator(expected, actual).compare(diffs::add);
+
+        assertEquals(1, diffs.size());
+        assertEquals(DiffKind.TYPE, diffs.get(0).getKind());
+        assertEquals(depth + 6, diffs.get(0).getLocation().getDepth());
+    }
+
+    @Test
+    public void testDeepInlineSchema() throws Exception {
+        int depth = 20000;
+        SwaggerParser parser = new SwaggerParser();
+        Swagger expected = parser.parse("swagger: '2.0'\npaths:\n  /deep:\n    get:\n      responses:\n        '200':\n          description: ok\n");
+        Swagger actual = parser.parse("swagger: '2.0'\npaths:\n  /deep:\n    get:\n      responses:\n        '200':\n          description: ok\n");
+        Property expectedSchema = new StringProperty();
+        Property actualSchema = new IntegerProperty();
+        for (int i = 0; i < depth; i++) {
+            expectedSchema = new ObjectProperty(Collections.singletonMap("next", expectedSchema));
+            actualSchema = new ObjectProperty(Collections.singletonMap("next", actualSchema));
+        }
+        expected.getPath("/deep").getGet().getResponses().get("200").setSchema(expectedSchema);
+        actual.getPath("/deep").getGet().getResponses().get("200").setSchema(actualSchema);
+
+        ComparisonPlan plan = ComparisonPlan.compile(expected);
+        List<Diff> diffs = new ArrayList<>();
+        new SwaggerComparator(plan, new ResolvedSwagger(actual)).compare(diffs::add);
+
+        assertEquals(1, diffs.size());
+        assertEquals(DiffKind.TYPE, diffs.get(0).getKind());
+    }
+
+    @Test
+    public void testSpecTree() throws Exception {
+        Path expected = Files.createTempDirectory("expected");
+        Files.createDirectories(expected.resolve("svc"));
+        Files.copy(resource("actual.yaml"), expected.resolve("svc/entities.yaml"));
+        Files.copy(resource("expected.yaml"), expected.resolve("missing.yaml"));
+
+        File actual = File.createTempFile("actual", ".zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(actual))) {
+            zip.putNextEntry(new ZipEntry("svc/entities.yaml"));
+            Files.copy(resource("expected.yaml"), zip);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SpecTreeComparator(ForkJoinPool.commonPool(), 2).compare(expected.toFile(), actual, out);
+        SwaggerParser parser = new SwaggerParser();
+        String report = new SwaggerComparator(parser.read("actual.yaml"), parser.read("expected.yaml")).compare();
+        assertEquals("{\"missing.yaml\":\"Not found\",\"svc/entities.yaml\":" + report + "}", out.toString("UTF-8"));
+        actual.delete();
+    }
+
+    @Test
+    public void testSpecTreeBrokenPair() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: '#/definitions/%s'\n" +
+                "definitions:\n" +
+                "  User:\n" +
+                "    type: object\n";
+        Path expected = Files.createTempDirectory("expected");
+        Path actual = Files.createTempDirectory("actual");
+        for (Path directory : Arrays.asList(expected, actual)) {
+            Files.write(directory.resolve("ok.yaml"), String.format(spec, "Gone").getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("z.yaml"), String.format(spec, "User").getBytes(StandardCharsets.UTF_8));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SpecTreeComparator(ForkJoinPool.commonPool(), 2).compare(expected.toFile(), actual.toFile(), out);
+        assertEquals("{\"ok.yaml\":\"Not found definition of #/definitions/Gone\",\"z.yaml\":{}}", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testSpecTreeArchives() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: './models.yaml#/User'\n";
+        String models = "User:\n" +
+                "  type: object\n" +
+                "  properties:\n" +
+                "    name:\n" +
+                "      type: %s\n";
+        String directory = String.join("/", Collections.nCopies(12, "service"));
+        Path expected = Files.createTempDirectory("expected");
+        Files.createDirectories(expected.resolve(directory));
+        Files.write(expected.resolve(directory + "/api.yaml"), spec.getBytes(StandardCharsets.UTF_8));
+        Files.write(expected.resolve(directory + "/models.yaml"), String.format(models, "string").getBytes(StandardCharsets.UTF_8));
+        byte[] actualModels = String.format(models, "integer").getBytes(StandardCharsets.UTF_8);
+
+        File tarGz = File.createTempFile("actual", ".tar.gz");
+        try (java.util.zip.GZIPOutputStream out = new java.util.zip.GZIPOutputStream(new FileOutputStream(tarGz))) {
+            tarEntry(out, "././@LongLink", 'L', ("./" + directory + "/api.yaml\0").getBytes(StandardCharsets.UTF_8));
+            tarEntry(out, "./" + directory.substring(0, 90), '0', spec.getBytes(StandardCharsets.UTF_8));
+            String record = "path=" + directory + "/models.yaml\n";
+            String length = String.valueOf(record.length() + 4);
+            tarEntry(out, "PaxHeaders/models.yaml", 'x', (length + " " + record).getBytes(StandardCharsets.UTF_8));
+            tarEntry(out, "models.yaml", '0', actualModels);
+            tarEntry(out, "../outside.yaml", '0', spec.getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+        File zip = File.createTempFile("actual", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("./" + directory + "/api.yaml"));
+            out.write(spec.getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("./" + directory + "/models.yaml"));
+            out.write(actualModels);
+        }
+
+        try {
+            String report = "{\"" + directory + "/api.yaml\":{\"/users\":{\"GET\":{\"responses\":{\"200\":" +
+                    "{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}}}}," +
+                    "\"" + directory + "/models.yaml\":\"Unable to parse: " + directory + "/models.yaml\"}";
+            for (File actual : Arrays.asList(tarGz, zip)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new SpecTreeComparator(ForkJoinPool.commonPool(), 2).compare(expected.toFile(), actual, out);
+                assertEquals(actual.getName(), report, out.toString("UTF-8"));
+            }
+        } finally {
+            tarGz.delete();
+            zip.delete();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testWatch() throws Exception {
+        String spec = "swagger: '2.0'\n" +
+                "paths:\n" +
+                "  /users:\n" +
+                "    get:\n" +
+                "      responses:\n" +
+                "        '200':\n" +
+                "          schema:\n" +
+                "            $ref: '#/definitions/%s'\n" +
+                "definitions:\n" +
+                "  User:\n" +
+                "    type: object\n" +
+                "    properties:\n" +
+                "      name:\n" +
+                "        type: %s\n";
+        Path directory = Files.createTempDirectory("watch");
+        Path expected = directory.resolve("expected.yaml");
+        Path actual = directory.resolve("actual.yaml");
+        Files.write(expected, String.format(spec, "User", "string").getBytes(StandardCharsets.UTF_8));
+        Files.write(actual, String.format(spec, "User", "string").getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SpecWatcher watcher = new SpecWatcher(expected, actual, 50, SwaggerComparator::new, new PrintStream(out, true));
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (InterruptedException e) {
+                // stopped by the test
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        thread.start();
+        try {
+            awaitOutput(out, "Compared in", 1);
+
+            Files.write(actual, String.format(spec, "Missing", "string").getBytes(StandardCharsets.UTF_8));
+            awaitOutput(out, "Not found definition of #/definitions/Missing", 1);
+            assertTrue(thread.isAlive());
+
+            Files.write(actual, String.format(spec, "User", "integer").getBytes(StandardCharsets.UTF_8));
+            awaitOutput(out, "Compared in", 2);
+            assertTrue(out.toString().contains("{\"/users\":{\"GET\":{\"responses\":{\"200\":{\"name\":{\"type\":\"Expected 'string' but actual is 'integer'\"}}}}}}"));
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private static void tarEntry(OutputStream out, String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy(("ustar" + (char) 0 + "00").getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static String request(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+                out.write(buffer, 0, count);
+            return status + " " + out.toString("UTF-8");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void awaitOutput(ByteArrayOutputStream out, String text, int count) throws InterruptedException {
+        while (out.toString().split(Pattern.quote(text), -1).length - 1 < count)
+            Thread.sleep(20);
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path resource(String name) throws Exception {
+        return Paths.get(getClass().getResource("/" + name).toURI());
+    }
+
     private void prettyPrint(String json) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         Object obj = mapper.readValue(json, Object.class);